@@ -5,14 +5,38 @@
  */
 package de.thksystems.container.spring;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.annotation.Propagation;
-import org.springframework.transaction.support.DefaultTransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import de.thksystems.container.spring.metrics.TransactionMetrics;
+import de.thksystems.exception.ServiceRuntimeException;
+import de.thksystems.persistence.hibernate.inspection.NPlusOneDetector;
+import de.thksystems.util.concurrent.ConcurrencyLimit;
+import de.thksystems.util.concurrent.DaemonThreadFactory;
 import de.thksystems.util.function.CheckedBiFunction;
 import de.thksystems.util.function.CheckedConsumer;
 import de.thksystems.util.function.CheckedFunction;
@@ -26,21 +50,121 @@ public abstract class BaseService extends BaseComponent {
     @Autowired
     private PlatformTransactionManager transactionManager;
 
+    @Autowired(required = false)
+    private NPlusOneDetector nPlusOneDetector;
+
+    @Autowired(required = false)
+    private EntityManager entityManager;
+
+    @Autowired(required = false)
+    private TransactionMetrics transactionMetrics;
+
+    private long longTransactionThresholdNanos;
+
+    private RetryPolicy retryPolicy = RetryPolicy.defaults();
+
+    private Executor transactionCallbackExecutor;
+
+    /**
+     * Returns the {@link RetryPolicy} of the retrying runInTransaction methods (e.g. to get its statistics).
+     */
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * Sets the {@link RetryPolicy} of the retrying runInTransaction methods. (Default: {@link RetryPolicy#defaults()}, own instance per service)
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = Objects.requireNonNull(retryPolicy);
+    }
+
+    /**
+     * Sets the {@link TransactionMetrics} to record the durations of the transactions. (Default: the autowired one, if any)
+     */
+    public void setTransactionMetrics(TransactionMetrics transactionMetrics) {
+        this.transactionMetrics = transactionMetrics;
+    }
+
+    /**
+     * Sets the threshold for logging long transactions (as warning), or 0 to disable it. (Default: 0)
+     * <p>
+     * Long transactions hold their locks long and so block other transactions.
+     */
+    public void setLongTransactionThreshold(long threshold, TimeUnit unit) {
+        this.longTransactionThresholdNanos = unit.toNanos(threshold);
+    }
+
+    private boolean isTransactionTimed() {
+        return transactionMetrics != null || longTransactionThresholdNanos > 0;
+    }
+
+    /**
+     * Sets the executor running the after-commit and after-rollback callbacks, or <code>null</code> to run them in the thread completing the
+     * transaction. (Default: <code>null</code>)
+     *
+     * @see #afterCommit(Runnable)
+     */
+    public void setTransactionCallbackExecutor(Executor transactionCallbackExecutor) {
+        this.transactionCallbackExecutor = transactionCallbackExecutor;
+    }
+
+    /**
+     * Registers a callback, which runs after the commit of the current transaction (e.g. to publish events, evict caches or send messages), so slow
+     * side effects do not extend the time the locks are held.
+     * <p>
+     * All callbacks of a transaction are run as one batch (in the order of registration), by the executor set by
+     * {@link #setTransactionCallbackExecutor(Executor)}, if any. A failing callback is logged. Without an active transaction, the callback runs
+     * immediately (by the executor, if any).
+     */
+    protected void afterCommit(Runnable callback) {
+        TransactionHooks hooks = TransactionHooks.current(this, transactionCallbackExecutor);
+        if (hooks != null) {
+            hooks.addAfterCommit(callback);
+        } else {
+            TransactionHooks.run(Collections.singletonList(callback), transactionCallbackExecutor);
+        }
+    }
+
+    /**
+     * Registers a callback, which runs after the rollback of the current transaction. Without an active transaction, the callback is ignored.
+     *
+     * @see #afterCommit(Runnable)
+     */
+    protected void afterRollback(Runnable callback) {
+        TransactionHooks hooks = TransactionHooks.current(this, transactionCallbackExecutor);
+        if (hooks != null) {
+            hooks.addAfterRollback(callback);
+        }
+    }
+
     /**
      * Start transaction manually.
      * <p>
      * <b>Use it with caution!</b><br>
      * <b>Do not mix annotation based transaction handling and programmatically one!</b><br>
      *
-     * @param readonly    For readonly transactions.
+     * @param readonly    For readonly transactions. (The queries of the repositories are read-only then, see BaseRepository.isReadOnlyMode().)
      * @param propagation For special propagation (like REQUIRES_NEW)
      */
     protected TransactionStatus startTransaction(boolean readonly, Propagation propagation) {
-        LOG.trace("Starting new transaction");
-        DefaultTransactionDefinition transactionDefinition = new DefaultTransactionDefinition();
-        transactionDefinition.setReadOnly(readonly);
-        transactionDefinition.setPropagationBehavior(propagation.value());
-        return transactionManager.getTransaction(transactionDefinition);
+        return startTransaction(TransactionOptions.of(readonly, propagation));
+    }
+
+    /**
+     * Start transaction manually, with the given {@link TransactionOptions} (e.g. with isolation or timeout).
+     *
+     * @see #startTransaction(boolean, Propagation) for notes and warnings.
+     */
+    protected TransactionStatus startTransaction(TransactionOptions options) {
+        if (LOG.isTraceEnabled()) {
+            LOG.trace("Starting transaction {}", options);
+        }
+        TransactionStatus transactionStatus = transactionManager.getTransaction(options);
+        if (transactionStatus.isNewTransaction() && isTransactionTimed()) {
+            TransactionTimer.current().start(transactionStatus, options, System.nanoTime());
+        }
+        return transactionStatus;
     }
 
     /**
@@ -103,7 +227,13 @@ public abstract class BaseService extends BaseComponent {
                 rollbackTransaction(transactionStatus);
             } else {
                 LOG.trace("Committing transaction");
-                transactionManager.commit(transactionStatus);
+                try {
+                    transactionManager.commit(transactionStatus);
+                } catch (RuntimeException | Error e) {
+                    recordTransaction(transactionStatus, false, e);
+                    throw e;
+                }
+                recordTransaction(transactionStatus, true, null);
                 LOG.trace("Transaction committed");
             }
         }
@@ -115,27 +245,65 @@ public abstract class BaseService extends BaseComponent {
      * @see #startTransaction() for notes and warning.
      */
     protected void rollbackTransaction(TransactionStatus transactionStatus) {
+        rollbackTransaction(transactionStatus, null);
+    }
+
+    /**
+     * Rollback transaction manually, because of the given failure (for the {@link TransactionMetrics}).
+     *
+     * @see #startTransaction() for notes and warning.
+     */
+    protected void rollbackTransaction(TransactionStatus transactionStatus, Throwable cause) {
         if(transactionStatus != null && !transactionStatus.isCompleted()) {
             LOG.trace("Rolling back transaction.");
-            transactionManager.rollback(transactionStatus);
+            try {
+                transactionManager.rollback(transactionStatus);
+            } finally {
+                recordTransaction(transactionStatus, false, cause);
+            }
             LOG.trace("Transaction rollback.");
         }
     }
 
+    /**
+     * Records the duration of the completed transaction (if timed) and logs it, if it is long.
+     * <p>
+     * Nothing is allocated, as long as the transaction is not long.
+     */
+    private void recordTransaction(TransactionStatus transactionStatus, boolean committed, Throwable cause) {
+        if (!transactionStatus.isNewTransaction() || !isTransactionTimed()) {
+            return;
+        }
+        TransactionTimer timer = TransactionTimer.current();
+        int index = timer.stop(transactionStatus);
+        if (index < 0) {
+            return;
+        }
+        long nanos = System.nanoTime() - timer.getStartTime(index);
+        TransactionOptions options = timer.getOptions(index);
+        TransactionMetrics metrics = transactionMetrics;
+        if (metrics != null) {
+            if (committed) {
+                metrics.recordCommit(getClass(), options.getName(), options.getPropagation(), nanos);
+            } else {
+                metrics.recordRollback(getClass(), options.getName(), options.getPropagation(), nanos, cause);
+            }
+        }
+        if (longTransactionThresholdNanos > 0 && nanos >= longTransactionThresholdNanos) {
+            LOG.warn("Long transaction {} of {} {}. Runtime: {} ms", options, getClass().getSimpleName(), committed ? "committed" : "rolled back",
+                    TimeUnit.NANOSECONDS.toMillis(nanos));
+        }
+    }
+
     protected <X extends Throwable> void runInTransaction(CheckedRunnable<X> runnable) throws X {
         runInTransaction(Propagation.REQUIRED, runnable);
     }
 
     protected <X extends Throwable> void runInTransaction(Propagation propagation, CheckedRunnable<X> runnable) throws X {
-        TransactionStatus transactionStatus = null;
-        try {
-            transactionStatus = startTransaction(propagation);
+        this.<Void, X> runInTransaction(propagation, () -> {
             runnable.run();
-            commitTransaction(transactionStatus);
-        } catch (Throwable t) { // NOSONAR
-            rollbackTransaction(transactionStatus);
-            throw t;
-        }
+            return null;
+        });
     }
 
     protected <R, X extends Throwable> R runInTransaction(CheckedSupplier<R, X> supplier) throws X {
@@ -143,14 +311,60 @@ public abstract class BaseService extends BaseComponent {
     }
 
     protected <R, X extends Throwable> R runInTransaction(Propagation propagation, CheckedSupplier<R, X> supplier) throws X {
+        return runInTransaction(TransactionOptions.of(false, propagation), supplier);
+    }
+
+    protected <X extends Throwable> void runInTransaction(TransactionOptions options, CheckedRunnable<X> runnable) throws X {
+        this.<Void, X> runInTransaction(options, () -> {
+            runnable.run();
+            return null;
+        });
+    }
+
+    /**
+     * Runs the supplier in a transaction with the given {@link TransactionOptions}. (All the other runInTransaction methods delegate to this one.)
+     * <p>
+     * A REQUIRED transaction inside an active transaction takes a fast path: The supplier just runs in the active transaction, the transaction
+     * manager is only called, if the supplier fails (to set the active transaction rollback-only).<br>
+     * If a {@link NPlusOneDetector} is available, the statements of the transaction block are inspected for N+1 queries.
+     */
+    protected <R, X extends Throwable> R runInTransaction(TransactionOptions options, CheckedSupplier<R, X> supplier) throws X {
+        NPlusOneDetector.Scope detectorScope = nPlusOneDetector != null ? nPlusOneDetector.openScope(getClass().getSimpleName()) : null;
         TransactionStatus transactionStatus = null;
         try {
-            transactionStatus = startTransaction(propagation);
-            R result = supplier.get();
-            commitTransaction(transactionStatus);
+            R result;
+            if (options.getPropagation() == Propagation.REQUIRED && TransactionSynchronizationManager.isActualTransactionActive()) {
+                result = runInActiveTransaction(options, supplier);
+            } else {
+                transactionStatus = startTransaction(options);
+                result = supplier.get();
+                commitTransaction(transactionStatus);
+            }
+            if (detectorScope != null) {
+                NPlusOneDetector.Scope scope = detectorScope;
+                detectorScope = null;
+                scope.close();
+            }
             return result;
         } catch (Throwable t) { // NOSONAR
-            rollbackTransaction(transactionStatus);
+            rollbackTransaction(transactionStatus, t);
+            throw t;
+        } finally {
+            if (detectorScope != null) {
+                detectorScope.closeQuietly();
+            }
+        }
+    }
+
+    private <R, X extends Throwable> R runInActiveTransaction(TransactionOptions options, CheckedSupplier<R, X> supplier) throws X {
+        try {
+            return supplier.get();
+        } catch (Throwable t) { // NOSONAR
+            try {
+                rollbackTransaction(startTransaction(options), t);
+            } catch (RuntimeException e) {
+                t.addSuppressed(e);
+            }
             throw t;
         }
     }
@@ -160,15 +374,10 @@ public abstract class BaseService extends BaseComponent {
     }
 
     protected <C, X extends Throwable> void runInTransaction(Propagation propagation, CheckedConsumer<C, X> consumer, C c) throws X {
-        TransactionStatus transactionStatus = null;
-        try {
-            transactionStatus = startTransaction(propagation);
+        this.<Void, X> runInTransaction(propagation, () -> {
             consumer.accept(c);
-            commitTransaction(transactionStatus);
-        } catch (Throwable t) { // NOSONAR
-            rollbackTransaction(transactionStatus);
-            throw t;
-        }
+            return null;
+        });
     }
 
     protected <C, R, X extends Throwable> R runInTransaction(CheckedFunction<C, R, X> function, C c) throws X {
@@ -176,16 +385,7 @@ public abstract class BaseService extends BaseComponent {
     }
 
     protected <C, R, X extends Throwable> R runInTransaction(Propagation propagation, CheckedFunction<C, R, X> function, C c) throws X {
-        TransactionStatus transactionStatus = null;
-        try {
-            transactionStatus = startTransaction(propagation);
-            R result = function.apply(c);
-            commitTransaction(transactionStatus);
-            return result;
-        } catch (Throwable t) { // NOSONAR
-            rollbackTransaction(transactionStatus);
-            throw t;
-        }
+        return this.<R, X> runInTransaction(propagation, () -> function.apply(c));
     }
 
     protected <C, D, R, X extends Throwable> R runInTransaction(CheckedBiFunction<C, D, R, X> function, C c, D d) throws X {
@@ -193,16 +393,229 @@ public abstract class BaseService extends BaseComponent {
     }
 
     protected <C, D, R, X extends Throwable> R runInTransaction(Propagation propagation, CheckedBiFunction<C, D, R, X> function, C c, D d) throws X {
-        TransactionStatus transactionStatus = null;
+        return this.<R, X> runInTransaction(propagation, () -> function.apply(c, d));
+    }
+
+    protected <X extends Throwable> void runInTransactionWithRetry(CheckedRunnable<X> runnable) throws X {
+        runInTransactionWithRetry(Propagation.REQUIRED, runnable);
+    }
+
+    protected <X extends Throwable> void runInTransactionWithRetry(Propagation propagation, CheckedRunnable<X> runnable) throws X {
+        this.<Void, X> runInTransactionWithRetry(retryPolicy, propagation, () -> {
+            runnable.run();
+            return null;
+        });
+    }
+
+    protected <R, X extends Throwable> R runInTransactionWithRetry(CheckedSupplier<R, X> supplier) throws X {
+        return runInTransactionWithRetry(retryPolicy, Propagation.REQUIRED, supplier);
+    }
+
+    /**
+     * Runs the supplier in a transaction, restarting the whole transaction on retryable failures (see {@link RetryPolicy#isRetryable(Throwable)})
+     * with backoff, as long as the {@link RetryPolicy} allows it.
+     * <p>
+     * If the transaction joins an already active transaction (no REQUIRES_NEW), there are no retries, because the outer transaction is broken by the
+     * failure.<br>
+     * <b>The supplier must not have side effects outside of the transaction, because it may run several times!</b>
+     */
+    protected <R, X extends Throwable> R runInTransactionWithRetry(RetryPolicy retryPolicy, Propagation propagation, CheckedSupplier<R, X> supplier)
+            throws X {
+        return runInTransactionWithRetry(retryPolicy, TransactionOptions.of(false, propagation), supplier);
+    }
+
+    /**
+     * Runs the supplier in a transaction with the given {@link TransactionOptions}, restarting it on retryable failures.
+     *
+     * @see #runInTransactionWithRetry(RetryPolicy, Propagation, CheckedSupplier)
+     */
+    protected <R, X extends Throwable> R runInTransactionWithRetry(RetryPolicy retryPolicy, TransactionOptions options, CheckedSupplier<R, X> supplier)
+            throws X {
+        boolean retriesPossible = options.getPropagation() == Propagation.REQUIRES_NEW || !TransactionSynchronizationManager.isActualTransactionActive();
+        retryPolicy.onCall();
+        for (int attempt = 1;; attempt++) {
+            try {
+                return this.<R, X> runInTransaction(options, supplier);
+            } catch (Throwable t) { // NOSONAR
+                if (t instanceof Error || !retriesPossible || !retryPolicy.retry(t, attempt)) {
+                    throw t;
+                }
+                long backoffNanos = retryPolicy.backoffNanos(attempt);
+                LOG.debug("Retrying transaction (attempt {}) in {} us after failure: {}", attempt + 1, TimeUnit.NANOSECONDS.toMicros(backoffNanos),
+                        t.toString());
+                try {
+                    TimeUnit.NANOSECONDS.sleep(backoffNanos);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw t;
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs the consumer for all items, committing every <code>chunkSize</code> items. Fails on the first failed chunk.
+     *
+     * @see #runInChunkedTransactions(Iterable, int, ChunkOptions, CheckedConsumer)
+     */
+    protected <T, X extends Throwable> ChunkProgress runInChunkedTransactions(Iterable<T> items, int chunkSize, CheckedConsumer<T, X> consumer) throws X {
+        return runInChunkedTransactions(items, chunkSize, ChunkOptions.defaults(), consumer);
+    }
+
+    /**
+     * Runs the consumer for all items, every chunk of <code>chunkSize</code> items in its own transaction (REQUIRES_NEW), so neither the locks nor
+     * the session grow with the number of items. (The session is flushed and cleared at the end of every chunk, if an {@link EntityManager} is
+     * available.)
+     * <p>
+     * A failed chunk is rolled back and retried or skipped as configured by the {@link ChunkOptions}. The items of the previous chunks stay
+     * committed, if a chunk fails.
+     *
+     * @return The final progress.
+     */
+    protected <T, X extends Throwable> ChunkProgress runInChunkedTransactions(Iterable<T> items, int chunkSize, ChunkOptions options,
+            CheckedConsumer<T, X> consumer) throws X {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        ChunkProgress progress = new ChunkProgress();
+        Iterator<T> iterator = items.iterator();
+        List<T> chunk = new ArrayList<>(chunkSize);
+        while (iterator.hasNext()) {
+            chunk.clear();
+            while (chunk.size() < chunkSize && iterator.hasNext()) {
+                chunk.add(iterator.next());
+            }
+            runChunk(chunk, options, consumer, progress);
+            LOG.trace("Chunked transactions: {}", progress);
+            if (options.getProgressListener() != null) {
+                options.getProgressListener().accept(progress);
+            }
+        }
+        return progress;
+    }
+
+    private <T, X extends Throwable> void runChunk(List<T> chunk, ChunkOptions options, CheckedConsumer<T, X> consumer, ChunkProgress progress) throws X {
+        CheckedSupplier<Void, X> chunkSupplier = () -> {
+            for (T item : chunk) {
+                consumer.accept(item);
+            }
+            // A session bound to the thread (e.g. open-in-view) is reused by the transactions of all chunks, so it must not keep their entities.
+            if (entityManager != null) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+            return null;
+        };
         try {
-            transactionStatus = startTransaction(propagation);
-            R result = function.apply(c, d);
-            commitTransaction(transactionStatus);
-            return result;
+            if (options.getRetryPolicy() != null) {
+                runInTransactionWithRetry(options.getRetryPolicy(), TransactionOptions.of(false, Propagation.REQUIRES_NEW), chunkSupplier);
+            } else {
+                runInTransaction(Propagation.REQUIRES_NEW, chunkSupplier);
+            }
+            progress.committed(chunk.size());
         } catch (Throwable t) { // NOSONAR
-            rollbackTransaction(transactionStatus);
-            throw t;
+            if (t instanceof Error || !options.isSkipFailedChunks()) {
+                throw t;
+            }
+            LOG.warn("Skipping chunk {} of {} items after failure", progress.getChunks() + 1, chunk.size(), t);
+            progress.skipped(chunk.size(), t);
+        }
+    }
+
+    /**
+     * Runs the function for every item in its own REQUIRES_NEW transaction, up to {@value ParallelOptions#DEFAULT_PARALLELISM} items at the same
+     * time.
+     *
+     * @see #runInParallelTransactions(Collection, ParallelOptions, CheckedFunction)
+     */
+    protected <T, R, X extends Throwable> List<R> runInParallelTransactions(Collection<T> items, CheckedFunction<T, R, X> function) throws X {
+        return runInParallelTransactions(items, ParallelOptions.defaults(), function);
+    }
+
+    /**
+     * Runs the function for every item in its own transaction by worker threads, e.g. for independent jobs per tenant.
+     * <p>
+     * The transactions are independent of the transaction of the calling thread, so they do not see its uncommitted changes.<br>
+     * <b>The transaction of the calling thread must not hold locks needed by the tasks!</b>
+     * <p>
+     * By default, the first failure is thrown: The tasks not yet started are cancelled, the running ones are interrupted (but may still commit). If
+     * the errors are collected (see {@link ParallelOptions#collectingErrors()}), all tasks run and a {@link ParallelTransactionsException} is thrown,
+     * if some failed.
+     *
+     * @return The results in the order of the items.
+     */
+    protected <T, R, X extends Throwable> List<R> runInParallelTransactions(Collection<T> items, ParallelOptions options,
+            CheckedFunction<T, R, X> function) throws X {
+        int size = items.size();
+        List<R> resultList = new ArrayList<>(size);
+        if (size == 0) {
+            return resultList;
+        }
+        ExecutorService ownExecutor = options.getExecutor() == null ? Executors.newFixedThreadPool(Math.min(options.getParallelism(), size),
+                new DaemonThreadFactory(getClass().getSimpleName() + "-parallel")) : null;
+        CompletionService<Integer> completionService = new ExecutorCompletionService<>(ownExecutor != null ? ownExecutor : options.getExecutor());
+        ConcurrencyLimit concurrencyLimit = new ConcurrencyLimit(options.getParallelism());
+        Object[] results = new Object[size];
+        Throwable[] failures = new Throwable[size];
+        List<Future<Integer>> futures = new ArrayList<>(size);
+        boolean completed = false;
+        try {
+            int index = 0;
+            for (T item : items) {
+                int i = index++;
+                futures.add(completionService.submit(concurrencyLimit.limit(() -> {
+                    try {
+                        results[i] = runInTransaction(options.getTransactionOptions(), () -> function.apply(item));
+                    } catch (Throwable t) { // NOSONAR
+                        failures[i] = t;
+                    }
+                    return i;
+                })));
+            }
+            SortedMap<Integer, Throwable> collectedFailures = new TreeMap<>();
+            for (int n = 0; n < size; n++) {
+                int i = completionService.take().get();
+                if (failures[i] != null) {
+                    if (!options.isCollectErrors()) {
+                        throw BaseService.<X> asThrown(failures[i]);
+                    }
+                    collectedFailures.put(i, failures[i]);
+                }
+            }
+            completed = true;
+            for (Object result : results) {
+                resultList.add(castResult(result));
+            }
+            if (!collectedFailures.isEmpty()) {
+                throw new ParallelTransactionsException(resultList, collectedFailures);
+            }
+            return resultList;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceRuntimeException("Parallel transactions interrupted", e);
+        } catch (ExecutionException e) {
+            throw new ServiceRuntimeException("Parallel transaction failed", e.getCause());
+        } finally {
+            if (!completed) {
+                futures.forEach(future -> future.cancel(true));
+            }
+            if (ownExecutor != null) {
+                ownExecutor.shutdownNow();
+            }
         }
     }
 
+    /**
+     * Returns the failure of a task as thrown by the function (so it is a X or unchecked).
+     */
+    @SuppressWarnings("unchecked")
+    private static <X extends Throwable> X asThrown(Throwable failure) {
+        return (X) failure;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <R> R castResult(Object result) {
+        return (R) result;
+    }
+
 }
@@ -0,0 +1,79 @@
+/*
+ * tksCommons / mugwort
+ *
+ * Author : Thomas Kuhlmann (ThK-Systems, http://oss.thk-systems.de) License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+package de.thksystems.container.spring;
+
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Options of {@link BaseService#runInChunkedTransactions(Iterable, int, ChunkOptions, de.thksystems.util.function.CheckedConsumer)}: The
+ * {@link RetryPolicy} of a failed chunk, whether it is skipped afterwards (instead of failing) and who is informed about the progress.
+ * <p>
+ * Example: <code>ChunkOptions.defaults().withRetryPolicy(RetryPolicy.defaults()).skippingFailedChunks()</code>
+ */
+public final class ChunkOptions {
+
+    private static final ChunkOptions DEFAULTS = new ChunkOptions(null, false, null);
+
+    private final RetryPolicy retryPolicy;
+    private final boolean skipFailedChunks;
+    private final Consumer<ChunkProgress> progressListener;
+
+    private ChunkOptions(RetryPolicy retryPolicy, boolean skipFailedChunks, Consumer<ChunkProgress> progressListener) {
+        this.retryPolicy = retryPolicy;
+        this.skipFailedChunks = skipFailedChunks;
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * No retries, failing on the first failed chunk, no progress listener.
+     */
+    public static ChunkOptions defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * Returns new options retrying a chunk, which failed retryable (see {@link RetryPolicy#isRetryable(Throwable)}), in a new transaction with
+     * the backoff, as long as the given policy allows it.
+     */
+    public ChunkOptions withRetryPolicy(RetryPolicy retryPolicy) {
+        return new ChunkOptions(Objects.requireNonNull(retryPolicy), skipFailedChunks, progressListener);
+    }
+
+    /**
+     * Returns new options skipping a chunk, which failed (after all retries), instead of failing.
+     */
+    public ChunkOptions skippingFailedChunks() {
+        return new ChunkOptions(retryPolicy, true, progressListener);
+    }
+
+    /**
+     * Returns new options calling the given listener after every chunk (committed or skipped).
+     */
+    public ChunkOptions withProgressListener(Consumer<ChunkProgress> progressListener) {
+        return new ChunkOptions(retryPolicy, skipFailedChunks, progressListener);
+    }
+
+    /**
+     * Returns the {@link RetryPolicy} of failed chunks, or <code>null</code>, if they are not retried.
+     */
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    public boolean isSkipFailedChunks() {
+        return skipFailedChunks;
+    }
+
+    public Consumer<ChunkProgress> getProgressListener() {
+        return progressListener;
+    }
+
+    @Override
+    public String toString() {
+        return "ChunkOptions[retryPolicy=" + retryPolicy + ", skipFailedChunks=" + skipFailedChunks + "]";
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * tksCommons / mugwort
+ *
+ * Author : Thomas Kuhlmann (ThK-Systems, http://oss.thk-systems.de) License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+package de.thksystems.container.spring;
+
+/**
+ * Progress (and finally the result) of {@link BaseService#runInChunkedTransactions(Iterable, int, ChunkOptions,
+ * de.thksystems.util.function.CheckedConsumer)}.
+ */
+public final class ChunkProgress {
+
+    private int chunks;
+    private long committedItems;
+    private int skippedChunks;
+    private long skippedItems;
+    private Throwable lastFailure;
+
+    ChunkProgress() {
+    }
+
+    void committed(int items) {
+        chunks++;
+        committedItems += items;
+    }
+
+    void skipped(int items, Throwable failure) {
+        chunks++;
+        skippedChunks++;
+        skippedItems += items;
+        lastFailure = failure;
+    }
+
+    /**
+     * Returns the number of processed (committed or skipped) chunks.
+     */
+    public int getChunks() {
+        return chunks;
+    }
+
+    public long getCommittedItems() {
+        return committedItems;
+    }
+
+    public int getSkippedChunks() {
+        return skippedChunks;
+    }
+
+    public long getSkippedItems() {
+        return skippedItems;
+    }
+
+    /**
+     * Returns the failure of the last skipped chunk, or <code>null</code>, if no chunk was skipped.
+     */
+    public Throwable getLastFailure() {
+        return lastFailure;
+    }
+
+    @Override
+    public String toString() {
+        return "ChunkProgress[chunks=" + chunks + ", committedItems=" + committedItems + ", skippedChunks=" + skippedChunks + ", skippedItems="
+                + skippedItems + "]";
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * tksCommons / mugwort
+ *
+ * Author : Thomas Kuhlmann (ThK-Systems, http://oss.thk-systems.de) License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+package de.thksystems.container.spring;
+
+import java.util.Objects;
+import java.util.concurrent.Executor;
+
+/**
+ * Options of {@link BaseService#runInParallelTransactions(java.util.Collection, ParallelOptions, de.thksystems.util.function.CheckedFunction)}: How
+ * many tasks run at the same time, by which executor, in which transactions and whether the first failure cancels the other tasks.
+ * <p>
+ * Example: <code>ParallelOptions.defaults().withParallelism(8).collectingErrors()</code>
+ */
+public final class ParallelOptions {
+
+    public static final int DEFAULT_PARALLELISM = 4;
+
+    private static final ParallelOptions DEFAULTS = new ParallelOptions(DEFAULT_PARALLELISM, null, false, TransactionOptions.REQUIRES_NEW);
+
+    private final int parallelism;
+    private final Executor executor;
+    private final boolean collectErrors;
+    private final TransactionOptions transactionOptions;
+
+    private ParallelOptions(int parallelism, Executor executor, boolean collectErrors, TransactionOptions transactionOptions) {
+        this.parallelism = parallelism;
+        this.executor = executor;
+        this.collectErrors = collectErrors;
+        this.transactionOptions = transactionOptions;
+    }
+
+    /**
+     * Parallelism {@value #DEFAULT_PARALLELISM} (by an own thread pool), {@link TransactionOptions#REQUIRES_NEW}, failing on the first failure.
+     */
+    public static ParallelOptions defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * Returns new options with the given maximum number of tasks running at the same time (and so the maximum number of used connections).
+     */
+    public ParallelOptions withParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
+        return new ParallelOptions(parallelism, executor, collectErrors, transactionOptions);
+    }
+
+    /**
+     * Returns new options running the tasks by the given executor, or by an own thread pool per call, if <code>null</code>.
+     * <p>
+     * The parallelism is limited by a {@link de.thksystems.util.concurrent.ConcurrencyLimit}, so it also holds for unbounded executors.
+     */
+    public ParallelOptions withExecutor(Executor executor) {
+        return new ParallelOptions(parallelism, executor, collectErrors, transactionOptions);
+    }
+
+    /**
+     * Returns new options running all tasks, even if some fail. The failures are collected in a {@link ParallelTransactionsException}.
+     */
+    public ParallelOptions collectingErrors() {
+        return new ParallelOptions(parallelism, executor, true, transactionOptions);
+    }
+
+    /**
+     * Returns new options running every task in a transaction with the given options (e.g. read-only or named).
+     */
+    public ParallelOptions withTransactionOptions(TransactionOptions transactionOptions) {
+        return new ParallelOptions(parallelism, executor, collectErrors, Objects.requireNonNull(transactionOptions));
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    public boolean isCollectErrors() {
+        return collectErrors;
+    }
+
+    public TransactionOptions getTransactionOptions() {
+        return transactionOptions;
+    }
+
+    @Override
+    public String toString() {
+        return "ParallelOptions[parallelism=" + parallelism + ", collectErrors=" + collectErrors + ", " + transactionOptions + "]";
+    }
+}
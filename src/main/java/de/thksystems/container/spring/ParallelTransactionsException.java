@@ -0,0 +1,46 @@
+/*
+ * tksCommons / mugwort
+ *
+ * Author : Thomas Kuhlmann (ThK-Systems, http://oss.thk-systems.de) License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+package de.thksystems.container.spring;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedMap;
+
+import de.thksystems.exception.ServiceRuntimeException;
+
+/**
+ * Failure of parallel transactions collecting their errors (see {@link ParallelOptions#collectingErrors()}).
+ * <p>
+ * The cause is the failure of the first failed task, the failures of the other failed tasks are suppressed.
+ */
+public class ParallelTransactionsException extends ServiceRuntimeException {
+
+    private static final long serialVersionUID = 4617820495387136518L;
+
+    private final transient List<?> results;
+    private final transient SortedMap<Integer, Throwable> failures;
+
+    ParallelTransactionsException(List<?> results, SortedMap<Integer, Throwable> failures) {
+        super(failures.size() + " of " + results.size() + " parallel transactions failed", failures.get(failures.firstKey()));
+        this.results = Collections.unmodifiableList(results);
+        this.failures = Collections.unmodifiableSortedMap(failures);
+        failures.tailMap(failures.firstKey() + 1).values().forEach(this::addSuppressed);
+    }
+
+    /**
+     * Returns the results of all tasks (in the order of the items), <code>null</code> for failed tasks.
+     */
+    public List<?> getResults() {
+        return results;
+    }
+
+    /**
+     * Returns the failures by the index of the item.
+     */
+    public SortedMap<Integer, Throwable> getFailures() {
+        return failures;
+    }
+}
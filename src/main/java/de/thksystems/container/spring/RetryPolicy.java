@@ -0,0 +1,266 @@
+/*
+ * tksCommons / mugwort
+ *
+ * Author : Thomas Kuhlmann (ThK-Systems, http://oss.thk-systems.de) License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+package de.thksystems.container.spring;
+
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.persistence.LockTimeoutException;
+import javax.persistence.OptimisticLockException;
+import javax.persistence.PessimisticLockException;
+
+import org.hibernate.StaleStateException;
+import org.hibernate.exception.LockAcquisitionException;
+import org.springframework.dao.ConcurrencyFailureException;
+
+import de.thksystems.exception.Retryable;
+
+/**
+ * Policy for retrying transactions of a {@link BaseService}: Maximum number of attempts, exponential backoff with jitter and a retry budget.
+ * <p>
+ * The retry budget limits the retries to a ratio of the calls (plus an initial reserve), so retries cannot multiply the load, if the database is
+ * overloaded. The budget and the statistics are shared by all calls using the same policy instance.
+ * <p>
+ * Example: <code>RetryPolicy.defaults().withMaxAttempts(5).withBackoff(10, 500, TimeUnit.MILLISECONDS)</code>
+ *
+ * @see #isRetryable(Throwable)
+ */
+public final class RetryPolicy {
+
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+    public static final long DEFAULT_INITIAL_BACKOFF_MILLIS = 5;
+    public static final long DEFAULT_MAX_BACKOFF_MILLIS = 1000;
+    public static final double DEFAULT_MULTIPLIER = 2.0;
+    public static final double DEFAULT_JITTER = 0.5;
+    public static final double DEFAULT_BUDGET_RATIO = 0.1;
+    public static final int DEFAULT_BUDGET_RESERVE = 10;
+
+    private static final long TOKEN = 1000;
+
+    private final int maxAttempts;
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
+    private final double multiplier;
+    private final double jitter;
+    private final double budgetRatio;
+    private final int budgetReserve;
+
+    private final AtomicLong budgetTokens;
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder attempts = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder giveUps = new LongAdder();
+    private final LongAdder budgetExhaustions = new LongAdder();
+
+    private RetryPolicy(int maxAttempts, long initialBackoffNanos, long maxBackoffNanos, double multiplier, double jitter, double budgetRatio,
+            int budgetReserve) {
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffNanos = initialBackoffNanos;
+        this.maxBackoffNanos = maxBackoffNanos;
+        this.multiplier = multiplier;
+        this.jitter = jitter;
+        this.budgetRatio = budgetRatio;
+        this.budgetReserve = budgetReserve;
+        this.budgetTokens = new AtomicLong(budgetReserve * TOKEN);
+    }
+
+    /**
+     * New policy with {@value #DEFAULT_MAX_ATTEMPTS} attempts, backoff from {@value #DEFAULT_INITIAL_BACKOFF_MILLIS} ms to
+     * {@value #DEFAULT_MAX_BACKOFF_MILLIS} ms (multiplied by {@value #DEFAULT_MULTIPLIER}, jitter {@value #DEFAULT_JITTER}) and a retry budget of
+     * {@value #DEFAULT_BUDGET_RATIO} retries per call (reserve {@value #DEFAULT_BUDGET_RESERVE}).
+     */
+    public static RetryPolicy defaults() {
+        return new RetryPolicy(DEFAULT_MAX_ATTEMPTS, TimeUnit.MILLISECONDS.toNanos(DEFAULT_INITIAL_BACKOFF_MILLIS),
+                TimeUnit.MILLISECONDS.toNanos(DEFAULT_MAX_BACKOFF_MILLIS), DEFAULT_MULTIPLIER, DEFAULT_JITTER, DEFAULT_BUDGET_RATIO, DEFAULT_BUDGET_RESERVE);
+    }
+
+    /**
+     * Returns a new policy with the given maximum number of attempts (including the first one).
+     */
+    public RetryPolicy withMaxAttempts(int maxAttempts) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("Max attempts must be positive: " + maxAttempts);
+        }
+        return new RetryPolicy(maxAttempts, initialBackoffNanos, maxBackoffNanos, multiplier, jitter, budgetRatio, budgetReserve);
+    }
+
+    /**
+     * Returns a new policy with the given backoff: The first retry waits <code>initial</code>, every further retry waits {@link #getMultiplier()}
+     * times longer, but at most <code>max</code>.
+     */
+    public RetryPolicy withBackoff(long initial, long max, TimeUnit unit) {
+        if (initial < 0 || max < initial) {
+            throw new IllegalArgumentException("Invalid backoff: " + initial + " to " + max);
+        }
+        return new RetryPolicy(maxAttempts, unit.toNanos(initial), unit.toNanos(max), multiplier, jitter, budgetRatio, budgetReserve);
+    }
+
+    /**
+     * Returns a new policy with the given backoff multiplier (at least 1).
+     */
+    public RetryPolicy withMultiplier(double multiplier) {
+        if (!(multiplier >= 1.0)) {
+            throw new IllegalArgumentException("Multiplier must be at least 1: " + multiplier);
+        }
+        return new RetryPolicy(maxAttempts, initialBackoffNanos, maxBackoffNanos, multiplier, jitter, budgetRatio, budgetReserve);
+    }
+
+    /**
+     * Returns a new policy with the given jitter: The backoff is reduced randomly by up to this fraction (0 = no jitter, 1 = full jitter), so
+     * conflicting transactions do not retry at the same time.
+     */
+    public RetryPolicy withJitter(double jitter) {
+        if (!(jitter >= 0.0 && jitter <= 1.0)) {
+            throw new IllegalArgumentException("Jitter must be between 0 and 1: " + jitter);
+        }
+        return new RetryPolicy(maxAttempts, initialBackoffNanos, maxBackoffNanos, multiplier, jitter, budgetRatio, budgetReserve);
+    }
+
+    /**
+     * Returns a new policy with the given retry budget: Every call earns <code>ratio</code> retries, up to <code>reserve</code> retries are saved
+     * (and available initially).
+     */
+    public RetryPolicy withBudget(double ratio, int reserve) {
+        if (!(ratio >= 0.0) || reserve < 0) {
+            throw new IllegalArgumentException("Invalid retry budget: " + ratio + ", reserve " + reserve);
+        }
+        return new RetryPolicy(maxAttempts, initialBackoffNanos, maxBackoffNanos, multiplier, jitter, ratio, reserve);
+    }
+
+    /**
+     * Returns <code>true</code>, if the failure (or one of its causes) is {@link Retryable} and retryable, or is an optimistic locking failure, a
+     * lock failure, a deadlock or a serialization failure (SQL state class 40).
+     */
+    public static boolean isRetryable(Throwable failure) {
+        for (Throwable t = failure; t != null; t = t.getCause() == t ? null : t.getCause()) {
+            if (t instanceof Retryable) {
+                if (((Retryable) t).isRetryable()) {
+                    return true;
+                }
+            } else if (t instanceof ConcurrencyFailureException || t instanceof OptimisticLockException || t instanceof PessimisticLockException
+                    || t instanceof LockTimeoutException || t instanceof StaleStateException || t instanceof LockAcquisitionException) {
+                return true;
+            } else if (t instanceof SQLException && ((SQLException) t).getSQLState() != null && ((SQLException) t).getSQLState().startsWith("40")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Notes the start of a call and earns retry budget.
+     */
+    void onCall() {
+        calls.increment();
+        attempts.increment();
+        long max = budgetReserve * TOKEN;
+        long earned = (long) (budgetRatio * TOKEN);
+        budgetTokens.getAndUpdate(tokens -> Math.min(max, tokens + earned));
+    }
+
+    /**
+     * Decides, if the failed attempt is retried. If so, the budget is spent and the attempt is counted.
+     *
+     * @param attempt The number of the failed attempt (starting with 1).
+     */
+    boolean retry(Throwable failure, int attempt) {
+        boolean retryable = isRetryable(failure);
+        if (attempt >= maxAttempts || !retryable) {
+            if (retryable || attempt > 1) {
+                giveUps.increment();
+            }
+            return false;
+        }
+        if (budgetTokens.getAndUpdate(tokens -> tokens >= TOKEN ? tokens - TOKEN : tokens) < TOKEN) {
+            budgetExhaustions.increment();
+            giveUps.increment();
+            return false;
+        }
+        retries.increment();
+        attempts.increment();
+        return true;
+    }
+
+    /**
+     * Returns the backoff (with jitter) in nanos before the given retry.
+     *
+     * @param retry The number of the retry (starting with 1).
+     */
+    long backoffNanos(int retry) {
+        double backoff = Math.min(maxBackoffNanos, initialBackoffNanos * Math.pow(multiplier, retry - 1));
+        return (long) (backoff * (1.0 - jitter * ThreadLocalRandom.current().nextDouble()));
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public long getInitialBackoff(TimeUnit unit) {
+        return unit.convert(initialBackoffNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public long getMaxBackoff(TimeUnit unit) {
+        return unit.convert(maxBackoffNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public double getMultiplier() {
+        return multiplier;
+    }
+
+    public double getJitter() {
+        return jitter;
+    }
+
+    public double getBudgetRatio() {
+        return budgetRatio;
+    }
+
+    public int getBudgetReserve() {
+        return budgetReserve;
+    }
+
+    /**
+     * Returns the number of calls (first attempts).
+     */
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    /**
+     * Returns the number of all attempts (calls and retries).
+     */
+    public long getAttempts() {
+        return attempts.sum();
+    }
+
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    /**
+     * Returns the number of calls, which failed finally after retries or with a retryable failure (e.g. because of the maximum number of attempts or
+     * the budget).
+     */
+    public long getGiveUps() {
+        return giveUps.sum();
+    }
+
+    /**
+     * Returns the number of retries denied by the retry budget.
+     */
+    public long getBudgetExhaustions() {
+        return budgetExhaustions.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "RetryPolicy[maxAttempts=" + maxAttempts + ", calls=" + getCalls() + ", attempts=" + getAttempts() + ", retries=" + getRetries()
+                + ", giveUps=" + getGiveUps() + ", budgetExhaustions=" + getBudgetExhaustions() + "]";
+    }
+}
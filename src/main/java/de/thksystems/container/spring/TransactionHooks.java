@@ -0,0 +1,98 @@
+/*
+ * tksCommons / mugwort
+ *
+ * Author : Thomas Kuhlmann (ThK-Systems, http://oss.thk-systems.de) License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+package de.thksystems.container.spring;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * After-commit and after-rollback callbacks of a {@link BaseService} for the current transaction. They are collected and run as one batch after
+ * the completion of the transaction, optionally by an executor.
+ * <p>
+ * Failing callbacks are logged and do not prevent the other callbacks from running.
+ */
+final class TransactionHooks extends TransactionSynchronizationAdapter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TransactionHooks.class);
+
+    private final Object owner;
+    private final Executor executor;
+    private final List<Runnable> afterCommit = new ArrayList<>();
+    private final List<Runnable> afterRollback = new ArrayList<>();
+
+    private TransactionHooks(Object owner, Executor executor) {
+        this.owner = owner;
+        this.executor = executor;
+    }
+
+    /**
+     * Returns the hooks of the owner for the current transaction (registering them, if not yet done), or <code>null</code>, if there is no
+     * transaction synchronization active.
+     */
+    static TransactionHooks current(Object owner, Executor executor) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof TransactionHooks && ((TransactionHooks) synchronization).owner == owner) {
+                return (TransactionHooks) synchronization;
+            }
+        }
+        TransactionHooks hooks = new TransactionHooks(owner, executor);
+        TransactionSynchronizationManager.registerSynchronization(hooks);
+        return hooks;
+    }
+
+    void addAfterCommit(Runnable callback) {
+        afterCommit.add(callback);
+    }
+
+    void addAfterRollback(Runnable callback) {
+        afterRollback.add(callback);
+    }
+
+    @Override
+    public void afterCompletion(int status) {
+        List<Runnable> callbacks = status == STATUS_COMMITTED ? afterCommit : status == STATUS_ROLLED_BACK ? afterRollback : null;
+        if (callbacks == null) {
+            LOG.warn("Transaction completed with unknown status, {} after-commit and {} after-rollback callbacks are not run", afterCommit.size(),
+                    afterRollback.size());
+        } else if (!callbacks.isEmpty()) {
+            run(callbacks, executor);
+        }
+    }
+
+    /**
+     * Runs the callbacks (in the order of registration) by the executor, or in the current thread, if the executor is <code>null</code>.
+     */
+    static void run(List<Runnable> callbacks, Executor executor) {
+        if (executor != null) {
+            executor.execute(() -> run(callbacks));
+        } else {
+            run(callbacks);
+        }
+    }
+
+    /**
+     * Runs the callbacks (in the order of registration).
+     */
+    private static void run(List<Runnable> callbacks) {
+        for (Runnable callback : callbacks) {
+            try {
+                callback.run();
+            } catch (RuntimeException e) {
+                LOG.error("Transaction callback failed", e);
+            }
+        }
+    }
+}
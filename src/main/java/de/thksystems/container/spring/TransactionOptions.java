@@ -0,0 +1,162 @@
+/*
+ * tksCommons / mugwort
+ *
+ * Author : Thomas Kuhlmann (ThK-Systems, http://oss.thk-systems.de) License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+package de.thksystems.container.spring;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Propagation;
+
+/**
+ * Immutable {@link TransactionDefinition} for the transactions of a {@link BaseService}: read-only flag, propagation, isolation, timeout and an
+ * optional name (for the metrics).
+ * <p>
+ * The unnamed instances are cached, so {@link #of(boolean, Propagation, Isolation, int)} allocates nothing for known options. They can be kept in
+ * constants and are passed to the transaction manager directly.
+ * <p>
+ * Example: <code>TransactionOptions.of(false, Propagation.REQUIRES_NEW).withIsolation(Isolation.SERIALIZABLE).withTimeout(10)</code>
+ */
+public final class TransactionOptions implements TransactionDefinition {
+
+    private static final TransactionOptions[][] DEFAULTS = new TransactionOptions[2][Propagation.values().length];
+    private static final ConcurrentMap<Long, TransactionOptions> CACHE = new ConcurrentHashMap<>();
+
+    static {
+        for (Propagation propagation : Propagation.values()) {
+            DEFAULTS[0][propagation.ordinal()] = new TransactionOptions(false, propagation, Isolation.DEFAULT, TIMEOUT_DEFAULT);
+            DEFAULTS[1][propagation.ordinal()] = new TransactionOptions(true, propagation, Isolation.DEFAULT, TIMEOUT_DEFAULT);
+        }
+    }
+
+    /**
+     * Read-write transaction, joining an active one.
+     */
+    public static final TransactionOptions REQUIRED = of(false, Propagation.REQUIRED);
+
+    /**
+     * Read-only transaction, joining an active one.
+     */
+    public static final TransactionOptions REQUIRED_READ_ONLY = of(true, Propagation.REQUIRED);
+
+    /**
+     * New read-write transaction, suspending an active one.
+     */
+    public static final TransactionOptions REQUIRES_NEW = of(false, Propagation.REQUIRES_NEW);
+
+    private final boolean readOnly;
+    private final Propagation propagation;
+    private final Isolation isolation;
+    private final int timeout;
+    private final String name;
+
+    private TransactionOptions(boolean readOnly, Propagation propagation, Isolation isolation, int timeout) {
+        this(readOnly, propagation, isolation, timeout, null);
+    }
+
+    private TransactionOptions(boolean readOnly, Propagation propagation, Isolation isolation, int timeout, String name) {
+        this.readOnly = readOnly;
+        this.propagation = propagation;
+        this.isolation = isolation;
+        this.timeout = timeout;
+        this.name = name;
+    }
+
+    /**
+     * Returns the options with default isolation and timeout.
+     */
+    public static TransactionOptions of(boolean readOnly, Propagation propagation) {
+        return DEFAULTS[readOnly ? 1 : 0][propagation.ordinal()];
+    }
+
+    /**
+     * Returns the options.
+     *
+     * @param timeout Timeout in seconds, or {@link TransactionDefinition#TIMEOUT_DEFAULT}.
+     */
+    public static TransactionOptions of(boolean readOnly, Propagation propagation, Isolation isolation, int timeout) {
+        if (timeout < TIMEOUT_DEFAULT) {
+            throw new IllegalArgumentException("Invalid timeout: " + timeout);
+        }
+        if (isolation == Isolation.DEFAULT && timeout == TIMEOUT_DEFAULT) {
+            return of(readOnly, propagation);
+        }
+        long key = ((long) timeout << 8) | (isolation.ordinal() << 4) | (propagation.ordinal() << 1) | (readOnly ? 1 : 0);
+        return CACHE.computeIfAbsent(key, k -> new TransactionOptions(readOnly, propagation, isolation, timeout));
+    }
+
+    public TransactionOptions withReadOnly(boolean readOnly) {
+        return of(readOnly, propagation, isolation, timeout).withName(name);
+    }
+
+    public TransactionOptions withPropagation(Propagation propagation) {
+        return of(readOnly, propagation, isolation, timeout).withName(name);
+    }
+
+    public TransactionOptions withIsolation(Isolation isolation) {
+        return of(readOnly, propagation, isolation, timeout).withName(name);
+    }
+
+    /**
+     * @param timeout Timeout in seconds, or {@link TransactionDefinition#TIMEOUT_DEFAULT}.
+     */
+    public TransactionOptions withTimeout(int timeout) {
+        return of(readOnly, propagation, isolation, timeout).withName(name);
+    }
+
+    /**
+     * Returns the options with the given name, e.g. the name of the service method (used by the transaction metrics).
+     * <p>
+     * Named options are not cached, so keep them in a constant.
+     */
+    public TransactionOptions withName(String name) {
+        if (Objects.equals(name, this.name)) {
+            return this;
+        }
+        return name == null ? of(readOnly, propagation, isolation, timeout) : new TransactionOptions(readOnly, propagation, isolation, timeout, name);
+    }
+
+    public Propagation getPropagation() {
+        return propagation;
+    }
+
+    public Isolation getIsolation() {
+        return isolation;
+    }
+
+    @Override
+    public int getPropagationBehavior() {
+        return propagation.value();
+    }
+
+    @Override
+    public int getIsolationLevel() {
+        return isolation.value();
+    }
+
+    @Override
+    public int getTimeout() {
+        return timeout;
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return "TransactionOptions[" + (name != null ? name + ", " : "") + propagation + (readOnly ? ", readOnly" : "") + ", isolation=" + isolation
+                + ", timeout=" + timeout + "]";
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * tksCommons / mugwort
+ *
+ * Author : Thomas Kuhlmann (ThK-Systems, http://oss.thk-systems.de) License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+package de.thksystems.container.spring;
+
+import java.util.Arrays;
+
+/**
+ * Start times of the open transactions of the current thread (as a stack, because transactions of a thread are nested).
+ * <p>
+ * It does not allocate, as long as the nesting depth does not exceed the capacity.
+ */
+final class TransactionTimer {
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    private static final ThreadLocal<TransactionTimer> TIMERS = ThreadLocal.withInitial(TransactionTimer::new);
+
+    private Object[] statuses = new Object[INITIAL_CAPACITY];
+    private TransactionOptions[] options = new TransactionOptions[INITIAL_CAPACITY];
+    private long[] startTimes = new long[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * Returns the timer of the current thread.
+     */
+    static TransactionTimer current() {
+        return TIMERS.get();
+    }
+
+    /**
+     * Notes the start of the transaction.
+     *
+     * @param status    The transaction status (compared by identity).
+     * @param startTime Start time by {@link System#nanoTime()}.
+     */
+    void start(Object status, TransactionOptions transactionOptions, long startTime) {
+        if (size == statuses.length) {
+            statuses = Arrays.copyOf(statuses, size * 2);
+            options = Arrays.copyOf(options, size * 2);
+            startTimes = Arrays.copyOf(startTimes, size * 2);
+        }
+        statuses[size] = status;
+        options[size] = transactionOptions;
+        startTimes[size] = startTime;
+        size++;
+    }
+
+    /**
+     * Notes the end of the transaction. Inner transactions, which were not ended, are dropped.
+     *
+     * @return The index to get the options and the start time (valid until the next start), or -1, if the transaction is unknown.
+     */
+    int stop(Object status) {
+        for (int i = size - 1; i >= 0; i--) {
+            if (statuses[i] == status) {
+                Arrays.fill(statuses, i, size, null);
+                size = i;
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    TransactionOptions getOptions(int index) {
+        return options[index];
+    }
+
+    long getStartTime(int index) {
+        return startTimes[index];
+    }
+
+    int size() {
+        return size;
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * tksCommons / mugwort
+ *
+ * Author : Thomas Kuhlmann (ThK-Systems, http://oss.thk-systems.de) License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+package de.thksystems.container.spring.metrics;
+
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.transaction.annotation.Propagation;
+
+import de.thksystems.util.metrics.CounterRegistry;
+import de.thksystems.util.metrics.LatencyHistogram;
+import de.thksystems.util.metrics.LatencyHistogramRegistry;
+
+/**
+ * {@link TransactionMetrics} recording a {@link LatencyHistogram} of the committed transactions per service and transaction name, the number of
+ * rollbacks per failure type and the number of transactions per propagation.
+ * <p>
+ * Recording is lock-free and does not allocate, once the histogram of the transaction (or the counter of the failure type) exists.
+ */
+public class LatencyHistogramTransactionMetrics implements TransactionMetrics {
+
+    /**
+     * Name of unnamed transactions.
+     */
+    public static final String UNNAMED = "-";
+
+    /**
+     * Failure type of rollbacks without failure (manual rollback or rollback-only).
+     */
+    public static final String NO_FAILURE = "-";
+
+    private final LatencyHistogramRegistry histograms = new LatencyHistogramRegistry();
+    private final CounterRegistry rollbacks = new CounterRegistry();
+    private final LongAdder[] transactions = new LongAdder[Propagation.values().length];
+
+    public LatencyHistogramTransactionMetrics() {
+        for (int i = 0; i < transactions.length; i++) {
+            transactions[i] = new LongAdder();
+        }
+    }
+
+    @Override
+    public void recordCommit(Class<?> serviceType, String name, Propagation propagation, long nanos) {
+        histograms.getOrCreate(serviceType, name != null ? name : UNNAMED).record(nanos, 1);
+        transactions[propagation.ordinal()].increment();
+    }
+
+    @Override
+    public void recordRollback(Class<?> serviceType, String name, Propagation propagation, long nanos, Throwable cause) {
+        rollbacks.increment(cause != null ? cause.getClass().getName() : NO_FAILURE);
+        transactions[propagation.ordinal()].increment();
+    }
+
+    /**
+     * Returns the histogram of the committed transactions of the given service and name ({@link #UNNAMED} for unnamed transactions), or
+     * <code>null</code>, if nothing was recorded.
+     */
+    public LatencyHistogram getHistogram(Class<?> serviceType, String name) {
+        return histograms.get(serviceType, name);
+    }
+
+    /**
+     * Returns the histograms of the given service by transaction name (sorted by name).
+     */
+    public Map<String, LatencyHistogram> getHistograms(Class<?> serviceType) {
+        return histograms.getAll(serviceType);
+    }
+
+    /**
+     * Returns the services with committed transactions.
+     */
+    public Iterable<Class<?>> getServiceTypes() {
+        return histograms.getTypes();
+    }
+
+    /**
+     * Returns the number of rollbacks by failure type (class name, or {@link #NO_FAILURE}), sorted by failure type.
+     */
+    public Map<String, Long> getRollbacks() {
+        return rollbacks.getAll();
+    }
+
+    /**
+     * Returns the number of all rollbacks.
+     */
+    public long getRollbackCount() {
+        return rollbacks.sum();
+    }
+
+    /**
+     * Returns the number of transactions (committed or rolled back) with the given propagation.
+     */
+    public long getTransactionCount(Propagation propagation) {
+        return transactions[propagation.ordinal()].sum();
+    }
+
+    /**
+     * Resets all histograms and counters.
+     */
+    public void reset() {
+        histograms.reset();
+        rollbacks.reset();
+        for (LongAdder counter : transactions) {
+            counter.reset();
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(histograms.toString());
+        for (Map.Entry<String, Long> rollbackEntry : getRollbacks().entrySet()) {
+            sb.append("Rollbacks by ").append(rollbackEntry.getKey()).append(": ").append(rollbackEntry.getValue()).append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * tksCommons / mugwort
+ *
+ * Author : Thomas Kuhlmann (ThK-Systems, http://oss.thk-systems.de) License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+package de.thksystems.container.spring.metrics;
+
+import org.springframework.transaction.annotation.Propagation;
+
+import de.thksystems.container.spring.BaseService;
+import de.thksystems.container.spring.TransactionOptions;
+
+/**
+ * Records the durations (from opening to commit or rollback, so roughly the time the locks are held) of the transactions started by
+ * {@link BaseService}s. Transactions joining an active transaction are not recorded.
+ * <p>
+ * Implement it to bridge the metrics to JMX, Micrometer, ... or use {@link LatencyHistogramTransactionMetrics}. If a bean of this type exists, it is
+ * autowired into every service.
+ */
+public interface TransactionMetrics {
+
+    /**
+     * Records a committed transaction. Called for every transaction, so it must be thread-safe and should neither block nor allocate.
+     *
+     * @param serviceType Class of the service.
+     * @param name        Name of the transaction (see {@link TransactionOptions#withName(String)}), or <code>null</code>.
+     * @param propagation Propagation of the transaction.
+     * @param nanos       Duration in nanoseconds.
+     */
+    void recordCommit(Class<?> serviceType, String name, Propagation propagation, long nanos);
+
+    /**
+     * Records a rolled back transaction (including failed commits).
+     *
+     * @param cause The failure causing the rollback, or <code>null</code> (manual rollback or rollback-only).
+     * @see #recordCommit(Class, String, Propagation, long)
+     */
+    void recordRollback(Class<?> serviceType, String name, Propagation propagation, long nanos, Throwable cause);
+
+}
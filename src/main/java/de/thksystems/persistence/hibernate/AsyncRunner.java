@@ -0,0 +1,61 @@
+/*
+ * tksCommons / mugwort
+ *
+ * Author : Thomas Kuhlmann (ThK-Systems, http://oss.thk-systems.de) License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+package de.thksystems.persistence.hibernate;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import de.thksystems.util.concurrent.ConcurrencyLimit;
+import de.thksystems.util.concurrent.DaemonThreadFactory;
+
+/**
+ * Runs work of a repository asynchronously, every call in its own read-only transaction (and so its own session).
+ * <p>
+ * The number of concurrently running calls is limited by a {@link ConcurrencyLimit}.
+ */
+final class AsyncRunner {
+
+    private final ExecutorService executor;
+    private final boolean ownExecutor;
+    private final ConcurrencyLimit concurrencyLimit;
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * @param executor    The executor to use, or <code>null</code> to create a fixed thread pool with <code>concurrency</code> daemon threads.
+     * @param concurrency The maximum number of concurrently running calls.
+     */
+    AsyncRunner(String name, ExecutorService executor, int concurrency, PlatformTransactionManager transactionManager) {
+        if (transactionManager == null) {
+            throw new IllegalStateException("No PlatformTransactionManager available for asynchronous calls");
+        }
+        this.concurrencyLimit = new ConcurrencyLimit(concurrency);
+        this.ownExecutor = executor == null;
+        this.executor = ownExecutor ? Executors.newFixedThreadPool(concurrency, new DaemonThreadFactory(name + "-async")) : executor;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    <R> CompletableFuture<R> supply(Supplier<R> work) {
+        Supplier<R> limitedWork = concurrencyLimit.limitUninterruptibly(() -> transactionTemplate.execute(status -> work.get()));
+        return CompletableFuture.supplyAsync(limitedWork, executor);
+    }
+
+    /**
+     * Shuts down the executor, if it was created by this runner.
+     */
+    void shutdown() {
+        if (ownExecutor) {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * tksCommons / mugwort
+ *
+ * Author : Thomas Kuhlmann (ThK-Systems, http://oss.thk-systems.de) License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+package de.thksystems.persistence.hibernate;
+
+import javax.persistence.MappedSuperclass;
+
+import org.apache.commons.lang3.ClassUtils;
+
+import de.thksystems.util.bean.ReflectiveBasicBean;
+
+/**
+ * Base of the identified entities (independent of the id generation): Entities with the same class and the same id are equal, the business string
+ * is built by the unique business key.
+ *
+ * @see IdentifiedEntity
+ * @see PooledIdentifiedEntity
+ */
+@MappedSuperclass
+public abstract class BaseIdentifiedEntity extends ReflectiveBasicBean {
+
+    private static final long serialVersionUID = -2170470373566917203L;
+
+    /**
+     * Returns the id, or 0, if not persisted yet.
+     */
+    public abstract long getId();
+
+    /**
+     * Returns short class name appended with unique business key, e.g. "Order: 00002" or "Customer: nobody@nowhere.bogus".
+     */
+    public String asBusinessString() {
+        return ClassUtils.getShortClassName(this, null) + ": " + getUniqueBusinessKey();
+    }
+
+    /**
+     * Business key must identify the object for its business, e.g. an order code or a customer number, and must be unique.
+     */
+    protected String getUniqueBusinessKey() {
+        return String.valueOf(getId());
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj != null && obj.getClass().equals(this.getClass()) && ((BaseIdentifiedEntity) obj).getId() > 0 && this.getId() > 0) {
+            return ((BaseIdentifiedEntity) obj).getId() == this.getId();
+        }
+        return super.equals(obj);
+    }
+}
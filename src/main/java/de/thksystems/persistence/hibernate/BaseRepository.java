@@ -8,33 +8,153 @@ package de.thksystems.persistence.hibernate;
 import java.io.Serializable;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+import javax.annotation.PreDestroy;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaDelete;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.CriteriaUpdate;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
 
 import org.hibernate.Criteria;
+import org.hibernate.FetchMode;
+import org.hibernate.FlushMode;
+import org.hibernate.NonUniqueResultException;
 import org.hibernate.Query;
 import org.hibernate.SQLQuery;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
+import org.hibernate.StatelessSession;
 import org.hibernate.criterion.Criterion;
 import org.hibernate.criterion.Example;
 import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Projection;
+import org.hibernate.criterion.ProjectionList;
+import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.internal.CriteriaImpl;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.transform.BasicTransformerAdapter;
+import org.hibernate.transform.ResultTransformer;
+import org.hibernate.transform.Transformers;
 import org.hibernate.type.LongType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import de.thksystems.exception.ServiceRuntimeException;
+import de.thksystems.persistence.hibernate.immutable.Immutable;
+import de.thksystems.persistence.hibernate.inspection.NPlusOneDetector;
+import de.thksystems.persistence.hibernate.metrics.RepositoryMetrics;
 
 @SuppressWarnings("unchecked")
 public abstract class BaseRepository<E extends Serializable> {
 
     static final Logger LOG = LoggerFactory.getLogger(BaseRepository.class);
+
+    /**
+     * Default JDBC fetch size used by the stream-methods.
+     */
+    public static final int DEFAULT_FETCH_SIZE = 100;
+
+    /**
+     * Default number of entities after which the session is flushed and cleared by the bulk-methods.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 50;
+
+    /**
+     * Default maximum size of IN-lists used to load entities by ids.
+     */
+    public static final int DEFAULT_IN_LIST_SIZE = 512;
+
+    /**
+     * Default maximum number of cached query templates.
+     */
+    public static final int DEFAULT_QUERY_CACHE_SIZE = 256;
+
+    /**
+     * Default maximum number of concurrently running asynchronous calls per repository.
+     */
+    public static final int DEFAULT_ASYNC_CONCURRENCY = 8;
+
+    /**
+     * Name of the id property of the entities.
+     */
+    static final String ID_PROPERTY = "id";
+
+    /**
+     * Detects ordered sql, which cannot be embedded as id-subquery (the order would be lost).
+     */
+    private static final Pattern ORDER_BY = Pattern.compile("\\bORDER\\s+BY\\b", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * Returns every row as <code>Object[]</code> (also for a single column).
+     */
+    private static final ResultTransformer TUPLE_TRANSFORMER = new BasicTransformerAdapter() {
+        private static final long serialVersionUID = -1420412829658325719L;
+
+        @Override
+        public Object transformTuple(Object[] tuple, String[] aliases) {
+            return tuple;
+        }
+    };
+
     protected Class<E> entityType;
+    private int fetchSize = DEFAULT_FETCH_SIZE;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private int inListSize = DEFAULT_IN_LIST_SIZE;
+    private boolean sqlUsingIdInSingleStatement;
+    private volatile LruCache<String, String> sqlUsingIdCache = new LruCache<>(DEFAULT_QUERY_CACHE_SIZE);
+    private volatile LruCache<String, String> sqlSelectingEntitiesByIdCache = new LruCache<>(DEFAULT_QUERY_CACHE_SIZE);
+    private final Map<String, String> namedQueries = new ConcurrentHashMap<>();
+    private final Map<String, String> registeredSqlUsingIdTemplates = new ConcurrentHashMap<>();
+    private final Map<String, String> registeredSqlSelectingEntitiesByIdTemplates = new ConcurrentHashMap<>();
+    private volatile EntityCache<E> entityCache;
+    private Distinct defaultDistinct = Distinct.NONE;
+    private int asyncConcurrency = DEFAULT_ASYNC_CONCURRENCY;
+    private ExecutorService asyncExecutor;
+    private AsyncRunner asyncRunner;
     @Autowired
     @PersistenceContext
     private EntityManager entityManager;
+    @Autowired(required = false)
+    private PlatformTransactionManager transactionManager;
+    @Autowired(required = false)
+    private RepositoryMetrics repositoryMetrics;
+    @Autowired(required = false)
+    private NPlusOneDetector nPlusOneDetector;
+    private long slowQueryThresholdNanos;
 
     public BaseRepository() {
         Type type = getClass().getGenericSuperclass();
@@ -63,254 +183,1713 @@ public abstract class BaseRepository<E extends Serializable> {
     }
 
     /**
-     * Flush the whole session.
+     * Returns the JDBC fetch size used by the stream-methods.
      */
-    public void flush() {
-        getCurrentSession().flush();
+    public int getFetchSize() {
+        return fetchSize;
     }
 
     /**
-     * Create entity.
+     * Sets the JDBC fetch size used by the stream-methods. (Default: {@value #DEFAULT_FETCH_SIZE})
      */
-    public void create(E object) {
-        getCurrentSession().save(object);
+    public void setFetchSize(int fetchSize) {
+        if (fetchSize < 1) {
+            throw new IllegalArgumentException("Fetch size must be positive: " + fetchSize);
+        }
+        this.fetchSize = fetchSize;
     }
 
     /**
-     * Create or update ...
+     * Returns the number of entities after which the session is flushed and cleared by the bulk-methods.
      */
-    public void createOrUpdate(E object) {
-        getCurrentSession().saveOrUpdate(object);
+    public int getBatchSize() {
+        return batchSize;
     }
 
     /**
-     * Create {@link Criteria} for entity-type.
+     * Sets the number of entities after which the session is flushed and cleared by the bulk-methods. (Default: {@value #DEFAULT_BATCH_SIZE})
+     * <p>
+     * It should be equal to the configured <code>hibernate.jdbc.batch_size</code>.
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Returns the maximum size of IN-lists used to load entities by ids.
      */
-    private Criteria distinctCriteria() {
-        return getCurrentSession().createCriteria(getEntityType()).setResultTransformer(Criteria.DISTINCT_ROOT_ENTITY);
+    public int getInListSize() {
+        return inListSize;
     }
 
     /**
-     * Create {@link Criteria} with the given {@link Criterion}s.
+     * Sets the maximum size of IN-lists used to load entities by ids. (Default: {@value #DEFAULT_IN_LIST_SIZE})
+     * <p>
+     * It must be a power of two and must not exceed the parameter limit of the database.
      */
-    private Criteria criteriaWithCriterions(Criterion... criterions) {
-        Criteria criteria = distinctCriteria();
-        for (Criterion criterion : criterions) {
-            criteria.add(criterion);
+    public void setInListSize(int inListSize) {
+        if (!IdChunks.isPowerOfTwo(inListSize)) {
+            throw new IllegalArgumentException("IN-list size must be a power of two: " + inListSize);
         }
-        return criteria;
+        this.inListSize = inListSize;
     }
 
     /**
-     * Find entity by id.
+     * Returns <code>true</code>, if the sql-using-id methods select the entities in a single statement.
      */
-    public E findById(long id) {
-        return (E) getCurrentSession().get(getEntityType(), id);
+    public boolean isSqlUsingIdInSingleStatement() {
+        return sqlUsingIdInSingleStatement;
     }
 
     /**
-     * Query all entities with the given ids.
+     * If set to <code>true</code>, {@link #findBySqlUsingId(String, Object...)} and {@link #queryBySqlUsingId(String, Object...)} embed the given sql
+     * as id-subquery into a native query selecting the entities, instead of selecting the ids first and loading the entities by a second query.
+     * (Default: <code>false</code>)
+     * <p>
+     * The sql is normalized like in the two-query mode (see {@link #findBySqlUsingId(String, Object...)}), so the same parameters work in both modes.
+     * It works only for entities mapped to a single table (no joined inheritance). The entities are not taken from the session, but the result is
+     * always the managed instance.<br>
+     * An id-subquery does not keep the order of the ids (and some databases reject ORDER BY in it), so sql containing ORDER BY is still executed by
+     * two queries, keeping the order of the ids.
      */
-    protected List<E> queryByIds(List<Long> list) {
-        return query(Restrictions.in("id", list));
+    public void setSqlUsingIdInSingleStatement(boolean sqlUsingIdInSingleStatement) {
+        this.sqlUsingIdInSingleStatement = sqlUsingIdInSingleStatement;
     }
 
     /**
-     * Query all - really all!!
+     * Returns the maximum number of cached query templates (per kind of query).
      */
-    public List<E> queryAll() {
-        return queryAll(new Order[0]);
+    public int getQueryCacheSize() {
+        return sqlUsingIdCache.getMaxSize();
     }
 
     /**
-     * Query all - really all!! - using the given order.
+     * Sets the maximum number of cached query templates (per kind of query). The (approximately) least recently used templates are evicted.
+     * (Default: {@value #DEFAULT_QUERY_CACHE_SIZE})
+     * <p>
+     * The query templates are the prepared sql strings of the sql-using-id methods. The templates of the named queries are kept separately and
+     * never evicted. (The parsing of HQL and SQL is cached by hibernate's query plan
+     * cache, see <code>hibernate.query.plan_cache_max_size</code>.)
      */
-    public List<E> queryAll(Order... orders) {
-        Criteria criteria = distinctCriteria();
-        for (Order order : orders) {
-            criteria.addOrder(order);
+    public void setQueryCacheSize(int queryCacheSize) {
+        this.sqlUsingIdCache = new LruCache<>(queryCacheSize);
+        this.sqlSelectingEntitiesByIdCache = new LruCache<>(queryCacheSize);
+    }
+
+    /**
+     * Registers a named hql-query, to be used by {@link #namedQuery(String)}.
+     * <p>
+     * Named queries should be registered at startup (e.g. in a <code>@PostConstruct</code> method). They are never evicted.
+     */
+    protected void registerNamedHql(String name, String hql) {
+        namedQueries.put(name, hql);
+    }
+
+    /**
+     * Registers a named sql-query for the sql-using-id methods, to be used by {@link #namedQuery(String)}.
+     * <p>
+     * The query template is prepared immediately.
+     *
+     * @see #registerNamedHql(String, String)
+     */
+    protected void registerNamedSqlUsingId(String name, String sql) {
+        namedQueries.put(name, sql);
+        registeredSqlUsingIdTemplates.put(sql, NativeSql.upperCase(sql));
+    }
+
+    /**
+     * Returns the named query.
+     *
+     * @throws IllegalArgumentException if there is no query registered with the given name.
+     */
+    protected String namedQuery(String name) {
+        String query = namedQueries.get(name);
+        if (query == null) {
+            throw new IllegalArgumentException("No named query '" + name + "' registered for " + getEntityType());
         }
-        return criteria.list();
+        return query;
     }
 
     /**
-     * Find by using {@link Criterion}s.
+     * Returns the {@link Distinct} strategy of the simple queries.
      */
-    protected E find(Criterion... criterions) {
-        long startTime = System.currentTimeMillis();
-        Criteria criteria = criteriaWithCriterions(criterions);
-        E result = (E) criteria.uniqueResult();
-        LOG.trace("Find for {} by {}. Runtime: {}", getEntityType(), criterions, System.currentTimeMillis() - startTime);
-        return result;
+    public Distinct getDefaultDistinct() {
+        return defaultDistinct;
     }
 
     /**
-     * Query by using {@link Criterion}s.
+     * Sets the {@link Distinct} strategy of the simple queries, i.e. {@link #queryAll(Order...)} and the find- and query-methods using
+     * {@link Criterion}s or an example. (Default: {@link Distinct#NONE})
+     * <p>
+     * Set it to {@link Distinct#IN_MEMORY}, if the entity has collections mapped to be fetched by join. The methods using a {@link CriteriaModifier}
+     * always use {@link Distinct#IN_MEMORY}, unless a strategy is given explicitly.
      */
-    protected List<E> query(Criterion... criterions) {
-        long startTime = System.currentTimeMillis();
-        Criteria criteria = criteriaWithCriterions(criterions);
-        List<E> list = criteria.list();
-        LOG.trace("Query for {} by {}. Runtime: {}", getEntityType(), criterions, System.currentTimeMillis() - startTime);
-        return list;
+    public void setDefaultDistinct(Distinct defaultDistinct) {
+        this.defaultDistinct = Objects.requireNonNull(defaultDistinct);
     }
 
     /**
-     * Query by using {@link Criterion}s and an {@link Order}.
+     * Returns the maximum number of concurrently running asynchronous calls.
      */
-    protected List<E> query(Order order, Criterion... criterions) {
-        long startTime = System.currentTimeMillis();
-        Criteria criteria = criteriaWithCriterions(criterions);
-        criteria.addOrder(order);
-        List<E> list = criteria.list();
-        LOG.trace("Query for {} by {} order {}. Runtime: {}", getEntityType(), criterions, order, System.currentTimeMillis() - startTime);
-        return list;
+    public synchronized int getAsyncConcurrency() {
+        return asyncConcurrency;
     }
 
     /**
-     * Find by user-defined criteria.
+     * Sets the maximum number of concurrently running asynchronous calls. (Default: {@value #DEFAULT_ASYNC_CONCURRENCY})
+     * <p>
+     * It should not exceed the size of the connection pool.
      */
-    protected E find(CriteriaModifier cm) {
-        long startTime = System.currentTimeMillis();
-        Criteria criteria = distinctCriteria();
-        cm.modify(criteria);
-        E result = (E) criteria.uniqueResult();
-        LOG.trace("Find for {} by {}. Runtime: {}", getEntityType(), criteria, System.currentTimeMillis() - startTime);
-        return result;
+    public synchronized void setAsyncConcurrency(int asyncConcurrency) {
+        if (asyncConcurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be positive: " + asyncConcurrency);
+        }
+        this.asyncConcurrency = asyncConcurrency;
+        shutdownAsync();
     }
 
     /**
-     * Query by user-defined criteria.
+     * Sets the executor for the asynchronous calls, e.g. an executor for virtual threads (Java 21+), or <code>null</code> to use an own fixed thread
+     * pool with {@link #getAsyncConcurrency()} daemon threads. (Default: <code>null</code>)
+     * <p>
+     * A given executor is not shut down by the repository.
      */
-    protected List<E> query(CriteriaModifier cm) {
-        long startTime = System.currentTimeMillis();
-        Criteria criteria = distinctCriteria();
-        cm.modify(criteria);
-        List<E> list = criteria.list();
-        LOG.trace("Query for {} by {}. Runtime: {}", getEntityType(), criteria, System.currentTimeMillis() - startTime);
-        return list;
+    public synchronized void setAsyncExecutor(ExecutorService asyncExecutor) {
+        this.asyncExecutor = asyncExecutor;
+        shutdownAsync();
     }
 
     /**
-     * Find by example.
+     * Shuts down the own executor of the asynchronous calls (if created).
      */
-    protected E find(E example) {
-        long startTime = System.currentTimeMillis();
-        Criteria criteria = distinctCriteria();
-        E result = (E) criteria.add(Example.create(example)).uniqueResult();
-        LOG.trace("Find for {} by {} (example). Runtime: {}", getEntityType(), criteria, System.currentTimeMillis() - startTime);
-        return result;
+    @PreDestroy
+    public synchronized void shutdownAsync() {
+        if (asyncRunner != null) {
+            asyncRunner.shutdown();
+            asyncRunner = null;
+        }
+    }
+
+    private synchronized AsyncRunner getAsyncRunner() {
+        if (asyncRunner == null) {
+            asyncRunner = new AsyncRunner(getEntityType().getSimpleName(), asyncExecutor, asyncConcurrency, transactionManager);
+        }
+        return asyncRunner;
     }
 
     /**
-     * Query by example.
+     * Sets the {@link RepositoryMetrics} to record the latencies and row counts of the queries. (Default: the autowired one, if any)
      */
-    protected List<E> query(E example) {
-        long startTime = System.currentTimeMillis();
-        Criteria criteria = distinctCriteria();
-        List<E> list = criteria.add(Example.create(example)).list();
-        LOG.trace("Query for {} by {} (example). Runtime: {}", getEntityType(), criteria, System.currentTimeMillis() - startTime);
-        return list;
+    public void setRepositoryMetrics(RepositoryMetrics repositoryMetrics) {
+        this.repositoryMetrics = repositoryMetrics;
     }
 
     /**
-     * Finds the entity by the given sql-query.
+     * Sets the {@link NPlusOneDetector} to relate N+1 findings to the preceding repository calls. (Default: the autowired one, if any)
+     */
+    public void setNPlusOneDetector(NPlusOneDetector nPlusOneDetector) {
+        this.nPlusOneDetector = nPlusOneDetector;
+    }
+
+    /**
+     * Sets the threshold for logging slow queries (as warning including the bound parameters), or 0 to disable it. (Default: 0)
+     */
+    public void setSlowQueryThreshold(long threshold, TimeUnit unit) {
+        this.slowQueryThresholdNanos = unit.toNanos(threshold);
+    }
+
+    /**
+     * Records the metrics, logs slow queries, notes the call for the {@link NPlusOneDetector} and traces the query.
+     * <p>
+     * Nothing is allocated, as long as the query is not slow and trace is disabled.
      *
-     * @param sql    The SQL must return just the id-field aliased as 'id'.
-     * @param params can be added by position '?' and a list of objects, or a single Map<String:Object> must be given.
+     * @param startTime Start time by {@link System#nanoTime()}.
      */
-    protected E findBySqlUsingId(String sql, Object... params) {
-        long startTime = System.currentTimeMillis();
-        SQLQuery sqlQuery = createSqlUsingId(sql.toUpperCase(), params);
-        long id = (long) sqlQuery.uniqueResult();
-        E result = findById(id);
-        LOG.trace("Find for {} by '{}'. Runtime: {}", getEntityType(), sql, System.currentTimeMillis() - startTime);
-        return result;
+    void recordQuery(String method, long startTime, int rows, Object query, Object[] params) {
+        long nanos = System.nanoTime() - startTime;
+        RepositoryMetrics metrics = repositoryMetrics;
+        if (metrics != null) {
+            metrics.record(getClass(), method, nanos, rows);
+        }
+        NPlusOneDetector detector = nPlusOneDetector;
+        if (detector != null) {
+            detector.onRepositoryCall(getClass(), method);
+        }
+        if (slowQueryThresholdNanos > 0 && nanos >= slowQueryThresholdNanos) {
+            LOG.warn("Slow {} for {} by {} with parameters {}. Rows: {}. Runtime: {} ms", method, getEntityType(), describe(query), describe(params), rows,
+                    TimeUnit.NANOSECONDS.toMillis(nanos));
+        } else if (LOG.isTraceEnabled()) {
+            LOG.trace("{} for {} by {}. Rows: {}. Runtime: {} ms", method, getEntityType(), describe(query), rows, TimeUnit.NANOSECONDS.toMillis(nanos));
+        }
+    }
+
+    private static String describe(Object object) {
+        if (object == null) {
+            return "-";
+        }
+        return object instanceof Object[] ? Arrays.toString((Object[]) object) : object.toString();
     }
 
     /**
-     * Query entities by the given sql-query.
+     * Enables the read-through cache of {@link #findById(long)}.
+     * <p>
+     * The cache is invalidated by the create-methods, {@link #executeUpdatebyHql(String, Object...)} and the updateWhere-methods. Entities annotated
+     * as {@link Immutable} are never invalidated, but the cache is always cleared by the deleteWhere-methods.<br>
+     * The cache is invalidated again after the completion of the modifying transaction, so an old state loaded concurrently is dropped.<br>
+     * A missed entity is returned from the session as usual. The cache is filled after the commit of the transaction by a separate stateless
+     * session (in a background thread), so it only contains committed, detached snapshots (never instances managed by a session).<br>
+     * <b>The cached entities are detached and shared. Use it for reference data only!</b>
      *
-     * @param sql    The SQL must return just the id-field aliased as 'id'.
-     * @param params can be added by position '?' and a list of objects, or a single Map<String:Object> must be given.
+     * @param maxSize Maximum number of cached entities. The least recently used entities are evicted.
+     * @param ttl     Time to live of the cached entities, or 0 for no expiration.
+     * @see EntityCache
      */
-    protected List<E> queryBySqlUsingId(String sql, Object... params) {
-        long startTime = System.currentTimeMillis();
-        SQLQuery sqlQuery = createSqlUsingId(sql.toUpperCase(), params);
-        List<Long> list = sqlQuery.list();
-        List<E> resultList = queryByIds(list);
-        LOG.trace("Query for {} by '{}'. Runtime: {}", getEntityType(), sql, System.currentTimeMillis() - startTime);
-        return resultList;
+    protected void enableEntityCache(int maxSize, long ttl, TimeUnit unit) {
+        boolean immutable = AnnotationUtils.findAnnotation(getEntityType(), Immutable.class) != null;
+        this.entityCache = new EntityCache<>(maxSize, ttl, unit, !immutable);
     }
 
-    private SQLQuery createSqlUsingId(String sql, Object... params) {
-        SQLQuery sqlQuery = getCurrentSession().createSQLQuery(sql).addScalar("id", LongType.INSTANCE);
-        setQueryParameter(sqlQuery, params);
-        return sqlQuery;
+    /**
+     * Disables the read-through cache of {@link #findById(long)}.
+     */
+    protected void disableEntityCache() {
+        this.entityCache = null;
     }
 
-    private void setQueryParameter(Query query, Object... params) {
-        if (params != null && params.length == 1 && params[0] instanceof Map) {
-            Map<String, Object> paramMap = (Map<String, Object>) params[0];
-            for (String key : paramMap.keySet()) {
-                query.setParameter(key, paramMap.get(key));
-            }
-        } else {
-            for (int i = 0; params != null && i < params.length; i++) {
-                query.setParameter(i, params[i]);
-            }
+    /**
+     * Returns the read-through cache of {@link #findById(long)} (e.g. to get its statistics), or <code>null</code>, if not enabled.
+     */
+    public EntityCache<E> getEntityCache() {
+        return entityCache;
+    }
+
+    private void invalidateCached(E object) {
+        EntityCache<E> cache = entityCache;
+        if (cache != null) {
+            EntityCacheInvalidation.invalidate(cache, getCurrentSession().getIdentifier(object));
+        }
+    }
+
+    void invalidateAllCached() {
+        EntityCache<E> cache = entityCache;
+        if (cache != null) {
+            EntityCacheInvalidation.invalidateAll(cache);
         }
     }
 
     /**
-     * Finds the entity by the given hql-query.
+     * Runs the work in read-only mode: All entities loaded by the queries of the session are read-only (no snapshots are kept for dirty checking)
+     * and the session is not flushed (<code>FlushMode.MANUAL</code>). The previous modes are restored afterwards.
+     * <p>
+     * The entities loaded in read-only mode stay read-only, <b>so modifications of them are never written to the database!</b>
      *
-     * @param hql    HQL query string.
-     * @param params can be added by position '?' and a list of objects, or a single Map<String:Object> must be given.
+     * @see #isReadOnlyMode()
      */
-    protected E findByHql(String hql, Object... params) {
-        long startTime = System.currentTimeMillis();
-        Query hqlQuery = createHql(hql, params);
-        E result = (E) hqlQuery.uniqueResult();
-        LOG.trace("Find for {} by '{}'. Runtime: {}", getEntityType(), hql, System.currentTimeMillis() - startTime);
-        return result;
+    public <R> R readOnly(Supplier<R> work) {
+        Session session = getCurrentSession();
+        boolean defaultReadOnly = session.isDefaultReadOnly();
+        FlushMode flushMode = session.getHibernateFlushMode();
+        session.setDefaultReadOnly(true);
+        session.setHibernateFlushMode(FlushMode.MANUAL);
+        try {
+            return work.get();
+        } finally {
+            session.setHibernateFlushMode(flushMode);
+            session.setDefaultReadOnly(defaultReadOnly);
+        }
     }
 
     /**
-     * Query entities by the given hql-query.
+     * Returns <code>true</code>, if the queries of this repository are read-only: Within {@link #readOnly(Supplier)} or within a read-only
+     * transaction (e.g. started by <code>BaseService.startTransaction(true)</code>).
+     * <p>
+     * The flush mode of the session is not changed (the <code>JpaTransactionManager</code> switches it to <code>FlushMode.MANUAL</code> for read-only
+     * transactions), but the queries created in read-only mode do not flush the session before running (query-level <code>FlushMode.MANUAL</code>).
+     */
+    public boolean isReadOnlyMode() {
+        return getCurrentSession().isDefaultReadOnly() || TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+    /**
+     * Flush the whole session.
+     */
+    public void flush() {
+        getCurrentSession().flush();
+    }
+
+    /**
+     * Create entity.
+     */
+    public void create(E object) {
+        getCurrentSession().save(object);
+        invalidateCached(object);
+    }
+
+    /**
+     * Create or update ...
+     */
+    public void createOrUpdate(E object) {
+        getCurrentSession().saveOrUpdate(object);
+        invalidateCached(object);
+    }
+
+    /**
+     * Create all entities, flushing and clearing the session every {@link #getBatchSize()} entities.
+     * <p>
+     * The inserts are JDBC-batched by {@link #getBatchSize()} (independent of <code>hibernate.jdbc.batch_size</code>).
+     * <code>hibernate.order_inserts</code> should be set to <code>true</code> and the ids must not be generated by an identity column.<br>
+     * <b>The session is cleared (if anything was written), so all entities of the session (not only the given ones) are detached afterwards!</b>
      *
-     * @param hql    HQL query string.
-     * @param params can be added by position '?' and a list of objects, or a single Map<String:Object> must be given.
+     * @return The number of created entities.
      */
-    protected List<E> queryByHql(String hql, Object... params) {
-        long startTime = System.currentTimeMillis();
-        Query hqlQuery = createHql(hql, params);
-        List<E> list = hqlQuery.list();
-        LOG.trace("Query for {} by '{}'. Runtime: {}", getEntityType(), hql, System.currentTimeMillis() - startTime);
-        return list;
+    public int createAll(Iterable<? extends E> objects) {
+        long startTime = System.nanoTime();
+        int count = inBatches(objects, getCurrentSession()::save);
+        recordQuery("createAll", startTime, count, null, null);
+        return count;
     }
 
     /**
-     * Execute an update by the given hql.
+     * Create or update all entities, flushing and clearing the session every {@link #getBatchSize()} entities.
+     * <p>
+     * The statements are JDBC-batched by {@link #getBatchSize()} (independent of <code>hibernate.jdbc.batch_size</code>).
+     * <code>hibernate.order_inserts</code> and <code>hibernate.order_updates</code> should be set to <code>true</code>.<br>
+     * <b>The session is cleared (if anything was written), so all entities of the session (not only the given ones) are detached afterwards!</b>
      *
-     * @param hql    HQL string.
-     * @param params can be added by position '?' and a list of objects, or a single Map<String:Object> must be given.
+     * @return The number of created or updated entities.
      */
-    protected int executeUpdatebyHql(String hql, Object... params) {
-        long startTime = System.currentTimeMillis();
-        Query hqlQuery = createHql(hql, params);
-        int count = hqlQuery.executeUpdate();
-        LOG.trace("Execute update of {} by '{}'. Runtime: {}", getEntityType(), hql, System.currentTimeMillis() - startTime);
+    public int createOrUpdateAll(Iterable<? extends E> objects) {
+        long startTime = System.nanoTime();
+        int count = inBatches(objects, getCurrentSession()::saveOrUpdate);
+        recordQuery("createOrUpdateAll", startTime, count, null, null);
         return count;
     }
 
-    protected Query createHql(String hql, Object... params) {
-        Query hqlQuery = getCurrentSession().createQuery(hql);
-        setQueryParameter(hqlQuery, params);
-        return hqlQuery;
+    private int inBatches(Iterable<? extends E> objects, Consumer<E> action) {
+        Session session = getCurrentSession();
+        Integer previousJdbcBatchSize = session.getJdbcBatchSize();
+        session.setJdbcBatchSize(batchSize);
+        try {
+            int count = 0;
+            for (E object : objects) {
+                action.accept(object);
+                invalidateCached(object);
+                if (++count % batchSize == 0) {
+                    session.flush();
+                    session.clear();
+                }
+            }
+            if (count % batchSize != 0) {
+                session.flush();
+                session.clear();
+            }
+            return count;
+        } finally {
+            session.setJdbcBatchSize(previousJdbcBatchSize);
+        }
     }
 
-    protected interface CriteriaModifier {
-        void modify(Criteria criteria);
+    /**
+     * Opens a {@link BulkSession} with a JDBC batch size of {@link #getBatchSize()}.
+     * <p>
+     * <b>The bulk session must be closed (e.g. by try-with-resources)!</b>
+     */
+    public BulkSession<E> openBulkSession() {
+        return openBulkSession(batchSize);
+    }
+
+    /**
+     * Opens a {@link BulkSession} with the given JDBC batch size. The current session is flushed, the bulk session uses its connection.
+     * <p>
+     * <b>The bulk session must be closed (e.g. by try-with-resources)!</b>
+     */
+    public BulkSession<E> openBulkSession(int jdbcBatchSize) {
+        if (jdbcBatchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + jdbcBatchSize);
+        }
+        Session session = getCurrentSession();
+        session.flush();
+        StatelessSession statelessSession = session.getSessionFactory().openStatelessSession(((SessionImplementor) session).connection());
+        return new BulkSession<>(this, statelessSession, jdbcBatchSize);
+    }
+
+    /**
+     * Create {@link Criteria} for entity-type, read-only and not flushing the session in read-only mode.
+     */
+    private Criteria createCriteria() {
+        Criteria criteria = getCurrentSession().createCriteria(getEntityType());
+        if (isReadOnlyMode()) {
+            criteria.setReadOnly(true);
+            criteria.setFlushMode(FlushMode.MANUAL);
+        }
+        return criteria;
+    }
+
+    /**
+     * Create {@link Criteria} for entity-type.
+     */
+    private Criteria criteria(Distinct distinct) {
+        Criteria criteria = createCriteria();
+        if (distinct == Distinct.IN_MEMORY) {
+            criteria.setResultTransformer(Criteria.DISTINCT_ROOT_ENTITY);
+        }
+        return criteria;
+    }
+
+    /**
+     * Create {@link Criteria} with the given {@link Criterion}s.
+     */
+    private Criteria criteriaWithCriterions(Distinct distinct, Criterion... criterions) {
+        return addCriterions(criteria(distinct), criterions);
+    }
+
+    /**
+     * List the result of the {@link Criteria} using the given {@link Distinct} strategy.
+     */
+    private List<E> list(Criteria criteria, Distinct distinct) {
+        if (distinct == Distinct.SQL) {
+            return loadByIds(distinctIds(criteria));
+        }
+        return criteria.list();
+    }
+
+    /**
+     * Select the distinct ids of the {@link Criteria} in the order of the criteria.
+     */
+    private List<Long> distinctIds(Criteria criteria) {
+        List<String> orderProperties = orderProperties(criteria);
+        if (orderProperties.isEmpty()) {
+            return criteria.setProjection(Projections.distinct(Projections.id())).list();
+        }
+        // Databases like H2 and PostgreSQL require the order properties in the select list of a distinct query.
+        ProjectionList projections = Projections.projectionList().add(Projections.id());
+        orderProperties.forEach(property -> projections.add(Projections.property(property)));
+        List<Object[]> rows = criteria.setProjection(Projections.distinct(projections)).list();
+        Set<Long> ids = new LinkedHashSet<>();
+        rows.forEach(row -> ids.add((Long) row[0]));
+        return new ArrayList<>(ids);
+    }
+
+    /**
+     * Get the (alias-qualified) properties of the orders of the {@link Criteria} apart from the id.
+     */
+    private List<String> orderProperties(Criteria criteria) {
+        List<String> properties = new ArrayList<>();
+        if (!(criteria instanceof CriteriaImpl)) {
+            return properties;
+        }
+        Iterator<CriteriaImpl.OrderEntry> orderings = ((CriteriaImpl) criteria).iterateOrderings();
+        while (orderings.hasNext()) {
+            CriteriaImpl.OrderEntry entry = orderings.next();
+            String property = entry.getOrder().getPropertyName();
+            String alias = entry.getCriteria() == criteria ? null : entry.getCriteria().getAlias();
+            if (property == null || (entry.getCriteria() != criteria && alias == null)) {
+                throw new IllegalArgumentException("Distinct.SQL needs orders on properties of the root or of aliased joins: " + entry);
+            }
+            String qualifiedProperty = alias != null ? alias + "." + property : property;
+            if (!ID_PROPERTY.equals(qualifiedProperty) && !properties.contains(qualifiedProperty)) {
+                properties.add(qualifiedProperty);
+            }
+        }
+        return properties;
+    }
+
+    /**
+     * Get the unique result of the {@link Criteria} using the given {@link Distinct} strategy.
+     */
+    private E uniqueResult(Criteria criteria, Distinct distinct) {
+        if (distinct == Distinct.SQL) {
+            List<Long> ids = distinctIds(criteria);
+            if (ids.size() > 1) {
+                throw new NonUniqueResultException(ids.size());
+            }
+            return ids.isEmpty() ? null : getByIdCached(ids.get(0));
+        }
+        return (E) criteria.uniqueResult();
+    }
+
+    private Criteria addCriterions(Criteria criteria, Criterion... criterions) {
+        for (Criterion criterion : criterions) {
+            criteria.add(criterion);
+        }
+        return criteria;
+    }
+
+    /**
+     * Find entity by id.
+     *
+     * @see #enableEntityCache(int, long, TimeUnit)
+     */
+    public E findById(long id) {
+        long startTime = System.nanoTime();
+        E result = getByIdCached(id);
+        recordQuery("findById", startTime, result != null ? 1 : 0, null, null);
+        return result;
+    }
+
+    private E getByIdCached(long id) {
+        EntityCache<E> cache = entityCache;
+        if (cache == null) {
+            return getById(id);
+        }
+        E entity = getFromSession(id);
+        if (entity == null) {
+            entity = cache.get(id);
+        }
+        if (entity == null) {
+            entity = getById(id);
+            if (entity != null) {
+                EntityCacheLoader.schedule(cache, getCurrentSession().getSessionFactory(), getEntityType(), inListSize, id);
+            }
+        }
+        return entity;
+    }
+
+    /**
+     * Find entity by id, fetching the associations of the given {@link FetchPlan} eagerly.
+     * <p>
+     * (If the entity is already contained in the session, it is returned as it is.)
+     */
+    public E findById(long id, FetchPlan fetchPlan) {
+        long startTime = System.nanoTime();
+        E result = withFetchProfiles(fetchPlan, () -> loadById(id, () -> {
+            if (fetchPlan.hasEntityGraph()) {
+                return entityManager.find(getEntityType(), id,
+                        Collections.singletonMap(FetchPlan.LOADGRAPH_HINT, fetchPlan.toEntityGraph(entityManager, getEntityType())));
+            }
+            return (E) getCurrentSession().get(getEntityType(), id);
+        }));
+        recordQuery("findById", startTime, result != null ? 1 : 0, fetchPlan, null);
+        return result;
+    }
+
+    private E getById(long id) {
+        return loadById(id, () -> (E) getCurrentSession().get(getEntityType(), id));
+    }
+
+    /**
+     * Loads the entity by the given loader. In read-only mode, an entity not yet contained in the session is set read-only, so its snapshot is
+     * discarded.
+     */
+    private E loadById(long id, Supplier<E> loader) {
+        if (!isReadOnlyMode() || getFromSession(id) != null) {
+            return loader.get();
+        }
+        E entity = loader.get();
+        if (entity != null) {
+            getCurrentSession().setReadOnly(entity, true);
+        }
+        return entity;
+    }
+
+    /**
+     * Runs the work with the fetch profiles of the {@link FetchPlan} enabled.
+     */
+    private <R> R withFetchProfiles(FetchPlan fetchPlan, Supplier<R> work) {
+        if (fetchPlan.getFetchProfiles().isEmpty()) {
+            return work.get();
+        }
+        Session session = getCurrentSession();
+        List<String> enabledFetchProfiles = new ArrayList<>();
+        try {
+            for (String fetchProfile : fetchPlan.getFetchProfiles()) {
+                if (!session.isFetchProfileEnabled(fetchProfile)) {
+                    session.enableFetchProfile(fetchProfile);
+                    enabledFetchProfiles.add(fetchProfile);
+                }
+            }
+            return work.get();
+        } finally {
+            for (String fetchProfile : enabledFetchProfiles) {
+                session.disableFetchProfile(fetchProfile);
+            }
+        }
+    }
+
+    /**
+     * Query all entities with the given ids.
+     * <p>
+     * The entities are returned in the order of the given ids (duplicate and unknown ids are skipped). Entities already contained in the session are
+     * not loaded again. The others are loaded in chunks of at most {@link #getInListSize()} ids, padded to powers of two, so just a few different
+     * statements are needed.
+     */
+    protected List<E> queryByIds(List<Long> list) {
+        long startTime = System.nanoTime();
+        List<E> result = loadByIds(list);
+        recordQuery("queryByIds", startTime, result.size(), null, null);
+        return result;
+    }
+
+    private List<E> loadByIds(List<Long> list) {
+        Set<Long> ids = new LinkedHashSet<>(list);
+        Map<Serializable, E> entitiesById = new HashMap<>(ids.size() * 2);
+        List<Long> missingIds = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            E entity = getFromSession(id);
+            if (entity != null) {
+                entitiesById.put(id, entity);
+            } else {
+                missingIds.add(id);
+            }
+        }
+        for (List<Long> chunk : IdChunks.split(missingIds, inListSize)) {
+            for (E entity : (List<E>) criteriaWithCriterions(Distinct.NONE, Restrictions.in(ID_PROPERTY, chunk)).list()) {
+                entitiesById.put(getCurrentSession().getIdentifier(entity), entity);
+            }
+        }
+        List<E> result = new ArrayList<>(entitiesById.size());
+        for (Long id : ids) {
+            E entity = entitiesById.get(id);
+            if (entity != null) {
+                result.add(entity);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the entity with the given id, if it is already contained in the session (without hitting the database), otherwise <code>null</code>.
+     */
+    private E getFromSession(Serializable id) {
+        SessionImplementor session = (SessionImplementor) getCurrentSession();
+        Object entity = session.getPersistenceContext().getEntity(session.generateEntityKey(id, getEntityPersister()));
+        return getEntityType().isInstance(entity) ? (E) entity : null;
+    }
+
+    /**
+     * Returns the {@link EntityPersister} of the entity of this Dao.
+     */
+    EntityPersister getEntityPersister() {
+        return ((SessionImplementor) getCurrentSession()).getFactory().getEntityPersister(getEntityType().getName());
+    }
+
+    /**
+     * Query all - really all!!
+     */
+    public List<E> queryAll() {
+        return queryAll(new Order[0]);
+    }
+
+    /**
+     * Query all - really all!! - using the given order.
+     */
+    public List<E> queryAll(Order... orders) {
+        long startTime = System.nanoTime();
+        Criteria criteria = criteria(defaultDistinct);
+        for (Order order : orders) {
+            criteria.addOrder(order);
+        }
+        List<E> list = list(criteria, defaultDistinct);
+        recordQuery("queryAll", startTime, list.size(), criteria, null);
+        return list;
+    }
+
+    /**
+     * Find by using {@link Criterion}s.
+     *
+     * @see #setDefaultDistinct(Distinct)
+     */
+    protected E find(Criterion... criterions) {
+        return find(defaultDistinct, criterions);
+    }
+
+    /**
+     * Find by using {@link Criterion}s and the given {@link Distinct} strategy.
+     */
+    protected E find(Distinct distinct, Criterion... criterions) {
+        long startTime = System.nanoTime();
+        Criteria criteria = criteriaWithCriterions(distinct, criterions);
+        E result = uniqueResult(criteria, distinct);
+        recordQuery("find", startTime, result != null ? 1 : 0, criterions, null);
+        return result;
+    }
+
+    /**
+     * Query by using {@link Criterion}s.
+     *
+     * @see #setDefaultDistinct(Distinct)
+     */
+    protected List<E> query(Criterion... criterions) {
+        return query(defaultDistinct, criterions);
+    }
+
+    /**
+     * Query by using {@link Criterion}s and the given {@link Distinct} strategy.
+     */
+    protected List<E> query(Distinct distinct, Criterion... criterions) {
+        long startTime = System.nanoTime();
+        Criteria criteria = criteriaWithCriterions(distinct, criterions);
+        List<E> list = list(criteria, distinct);
+        recordQuery("query", startTime, list.size(), criterions, null);
+        return list;
+    }
+
+    /**
+     * Query by using {@link Criterion}s and an {@link Order}.
+     *
+     * @see #setDefaultDistinct(Distinct)
+     */
+    protected List<E> query(Order order, Criterion... criterions) {
+        return query(defaultDistinct, order, criterions);
+    }
+
+    /**
+     * Query by using {@link Criterion}s, an {@link Order} and the given {@link Distinct} strategy.
+     */
+    protected List<E> query(Distinct distinct, Order order, Criterion... criterions) {
+        long startTime = System.nanoTime();
+        Criteria criteria = criteriaWithCriterions(distinct, criterions);
+        criteria.addOrder(order);
+        List<E> list = list(criteria, distinct);
+        recordQuery("query", startTime, list.size(), criteria, null);
+        return list;
+    }
+
+    /**
+     * Query by using {@link Criterion}s, fetching the associations of the given {@link FetchPlan} eagerly (by join).
+     * <p>
+     * If the fetch plan has paths, {@link Distinct#IN_MEMORY} is used, because fetch joins of collections multiply the rows.
+     *
+     * @throws IllegalArgumentException if the fetch plan has a named entity graph, which is not supported by criteria queries.
+     */
+    protected List<E> query(FetchPlan fetchPlan, Criterion... criterions) {
+        if (fetchPlan.getEntityGraphName() != null) {
+            throw new IllegalArgumentException("Named entity graphs are not supported by criteria queries, use paths: " + fetchPlan);
+        }
+        long startTime = System.nanoTime();
+        Distinct distinct = fetchPlan.getPaths().isEmpty() ? defaultDistinct : Distinct.IN_MEMORY;
+        Criteria criteria = criteriaWithCriterions(distinct, criterions);
+        for (String path : fetchPlan.getPaths()) {
+            criteria.setFetchMode(path, FetchMode.JOIN);
+        }
+        List<E> list = withFetchProfiles(fetchPlan, () -> list(criteria, distinct));
+        recordQuery("query", startTime, list.size(), criteria, null);
+        return list;
+    }
+
+    /**
+     * Find by user-defined criteria (using {@link Distinct#IN_MEMORY}, because the criteria may contain joins).
+     */
+    protected E find(CriteriaModifier cm) {
+        return find(Distinct.IN_MEMORY, cm);
+    }
+
+    /**
+     * Find by user-defined criteria and the given {@link Distinct} strategy.
+     */
+    protected E find(Distinct distinct, CriteriaModifier cm) {
+        long startTime = System.nanoTime();
+        Criteria criteria = criteria(distinct);
+        cm.modify(criteria);
+        E result = uniqueResult(criteria, distinct);
+        recordQuery("find", startTime, result != null ? 1 : 0, criteria, null);
+        return result;
+    }
+
+    /**
+     * Query by user-defined criteria (using {@link Distinct#IN_MEMORY}, because the criteria may contain joins).
+     */
+    protected List<E> query(CriteriaModifier cm) {
+        return query(Distinct.IN_MEMORY, cm);
+    }
+
+    /**
+     * Query by user-defined criteria and the given {@link Distinct} strategy.
+     */
+    protected List<E> query(Distinct distinct, CriteriaModifier cm) {
+        long startTime = System.nanoTime();
+        Criteria criteria = criteria(distinct);
+        cm.modify(criteria);
+        List<E> list = list(criteria, distinct);
+        recordQuery("query", startTime, list.size(), criteria, null);
+        return list;
+    }
+
+    /**
+     * Find by example.
+     *
+     * @see #setDefaultDistinct(Distinct)
+     */
+    protected E find(E example) {
+        long startTime = System.nanoTime();
+        Criteria criteria = criteria(defaultDistinct);
+        E result = uniqueResult(criteria.add(Example.create(example)), defaultDistinct);
+        recordQuery("findByExample", startTime, result != null ? 1 : 0, criteria, null);
+        return result;
+    }
+
+    /**
+     * Query by example.
+     *
+     * @see #setDefaultDistinct(Distinct)
+     */
+    protected List<E> query(E example) {
+        long startTime = System.nanoTime();
+        Criteria criteria = criteria(defaultDistinct);
+        List<E> list = list(criteria.add(Example.create(example)), defaultDistinct);
+        recordQuery("queryByExample", startTime, list.size(), criteria, null);
+        return list;
+    }
+
+    /**
+     * Finds the entity by the given sql-query.
+     * <p>
+     * The sql is upper-cased, except string literals, quoted identifiers and the names of named parameters.
+     *
+     * @param sql    The SQL must return just the id-field aliased as 'id'.
+     * @param params can be added by position '?' and a list of objects, or a single Map<String:Object> must be given.
+     * @see #setSqlUsingIdInSingleStatement(boolean)
+     */
+    protected E findBySqlUsingId(String sql, Object... params) {
+        long startTime = System.nanoTime();
+        E result;
+        String template = sqlUsingIdInSingleStatement ? sqlSelectingEntitiesByIdTemplate(sql) : null;
+        if (template != null) {
+            result = (E) createSqlSelectingEntitiesById(template, params).uniqueResult();
+        } else {
+            SQLQuery sqlQuery = createSqlUsingId(sqlUsingIdTemplate(sql), params);
+            long id = (long) sqlQuery.uniqueResult();
+            result = getByIdCached(id);
+        }
+        recordQuery("findBySqlUsingId", startTime, result != null ? 1 : 0, sql, params);
+        return result;
+    }
+
+    /**
+     * Query entities by the given sql-query.
+     *
+     * @param sql    The SQL must return just the id-field aliased as 'id'.
+     * @param params can be added by position '?' and a list of objects, or a single Map<String:Object> must be given.
+     * @see #setSqlUsingIdInSingleStatement(boolean)
+     */
+    protected List<E> queryBySqlUsingId(String sql, Object... params) {
+        long startTime = System.nanoTime();
+        List<E> resultList;
+        String template = sqlUsingIdInSingleStatement ? sqlSelectingEntitiesByIdTemplate(sql) : null;
+        if (template != null) {
+            resultList = createSqlSelectingEntitiesById(template, params).list();
+        } else {
+            SQLQuery sqlQuery = createSqlUsingId(sqlUsingIdTemplate(sql), params);
+            List<Long> list = sqlQuery.list();
+            resultList = loadByIds(list);
+        }
+        recordQuery("queryBySqlUsingId", startTime, resultList.size(), sql, params);
+        return resultList;
+    }
+
+    /**
+     * Creates a native query selecting the entities by the given template (see {@link #sqlSelectingEntitiesByIdTemplate(String)}).
+     */
+    private SQLQuery createSqlSelectingEntitiesById(String template, Object... params) {
+        SQLQuery sqlQuery = getCurrentSession().createSQLQuery(template).addEntity("E", getEntityType());
+        if (isReadOnlyMode()) {
+            sqlQuery.setReadOnly(true);
+            sqlQuery.setHibernateFlushMode(FlushMode.MANUAL);
+        }
+        setQueryParameter(sqlQuery, params);
+        return sqlQuery;
+    }
+
+    /**
+     * Returns the template of a native query selecting the entities, whose ids are returned by the given sql, in one statement:
+     * <code>SELECT {E.*} FROM &lt;table&gt; E WHERE E.&lt;id-column&gt; IN (&lt;sql&gt;)</code>, or <code>null</code>, if the sql is ordered.
+     */
+    private String sqlSelectingEntitiesByIdTemplate(String sql) {
+        String template = registeredSqlUsingIdTemplates.containsKey(sql)
+                ? registeredSqlSelectingEntitiesByIdTemplates.computeIfAbsent(sql, this::createSqlSelectingEntitiesByIdTemplate)
+                : sqlSelectingEntitiesByIdCache.computeIfAbsent(sql, this::createSqlSelectingEntitiesByIdTemplate);
+        return template.isEmpty() ? null : template;
+    }
+
+    /**
+     * Returns the template of {@link #sqlSelectingEntitiesByIdTemplate(String)}, or "", if the sql is ordered.
+     */
+    private String createSqlSelectingEntitiesByIdTemplate(String sql) {
+        if (ORDER_BY.matcher(sql).find()) {
+            return "";
+        }
+        AbstractEntityPersister persister = (AbstractEntityPersister) getEntityPersister();
+        return "SELECT {E.*} FROM " + persister.getTableName() + " E WHERE E." + persister.getIdentifierColumnNames()[0] + " IN ("
+                + NativeSql.upperCase(sql) + ")";
+    }
+
+    private String sqlUsingIdTemplate(String sql) {
+        String template = registeredSqlUsingIdTemplates.get(sql);
+        return template != null ? template : sqlUsingIdCache.computeIfAbsent(sql, NativeSql::upperCase);
+    }
+
+    private SQLQuery createSqlUsingId(String sql, Object... params) {
+        SQLQuery sqlQuery = getCurrentSession().createSQLQuery(sql).addScalar("id", LongType.INSTANCE);
+        setQueryParameter(sqlQuery, params);
+        return sqlQuery;
+    }
+
+    static void setQueryParameter(Query query, Object... params) {
+        if (params != null && params.length == 1 && params[0] instanceof Map) {
+            Map<String, Object> paramMap = (Map<String, Object>) params[0];
+            for (String key : paramMap.keySet()) {
+                query.setParameter(key, paramMap.get(key));
+            }
+        } else {
+            for (int i = 0; params != null && i < params.length; i++) {
+                query.setParameter(i, params[i]);
+            }
+        }
+    }
+
+    /**
+     * Finds the entity by the given hql-query.
+     *
+     * @param hql    HQL query string.
+     * @param params can be added by position '?' and a list of objects, or a single Map<String:Object> must be given.
+     */
+    protected E findByHql(String hql, Object... params) {
+        long startTime = System.nanoTime();
+        Query hqlQuery = createHql(hql, params);
+        E result = (E) hqlQuery.uniqueResult();
+        recordQuery("findByHql", startTime, result != null ? 1 : 0, hql, params);
+        return result;
+    }
+
+    /**
+     * Query entities by the given hql-query.
+     *
+     * @param hql    HQL query string.
+     * @param params can be added by position '?' and a list of objects, or a single Map<String:Object> must be given.
+     */
+    protected List<E> queryByHql(String hql, Object... params) {
+        long startTime = System.nanoTime();
+        Query hqlQuery = createHql(hql, params);
+        List<E> list = hqlQuery.list();
+        recordQuery("queryByHql", startTime, list.size(), hql, params);
+        return list;
+    }
+
+    /**
+     * Query entities by the given hql-query, fetching the associations of the given {@link FetchPlan} eagerly (as JPA entity graph).
+     *
+     * @param hql    HQL query string.
+     * @param params can be added by position '?' and a list of objects, or a single Map<String:Object> must be given.
+     */
+    protected List<E> queryByHql(FetchPlan fetchPlan, String hql, Object... params) {
+        long startTime = System.nanoTime();
+        javax.persistence.Query jpaQuery = entityManager.createQuery(hql);
+        if (fetchPlan.hasEntityGraph()) {
+            jpaQuery.setHint(FetchPlan.LOADGRAPH_HINT, fetchPlan.toEntityGraph(entityManager, getEntityType()));
+        }
+        Query hqlQuery = jpaQuery.unwrap(Query.class);
+        if (isReadOnlyMode()) {
+            hqlQuery.setReadOnly(true);
+            hqlQuery.setHibernateFlushMode(FlushMode.MANUAL);
+        }
+        setQueryParameter(hqlQuery, params);
+        List<E> list = withFetchProfiles(fetchPlan, jpaQuery::getResultList);
+        recordQuery("queryByHql", startTime, list.size(), hql, params);
+        return list;
+    }
+
+    /**
+     * Execute an update by the given hql.
+     *
+     * @param hql    HQL string.
+     * @param params can be added by position '?' and a list of objects, or a single Map<String:Object> must be given.
+     */
+    protected int executeUpdatebyHql(String hql, Object... params) {
+        long startTime = System.nanoTime();
+        Query hqlQuery = createHql(hql, params);
+        int count = hqlQuery.executeUpdate();
+        invalidateAllCached();
+        recordQuery("executeUpdateByHql", startTime, count, hql, params);
+        return count;
+    }
+
+    /**
+     * Update the entities matching the predicate without loading them, evicting the updated entities from the session.
+     *
+     * @see #updateWhere(Map, boolean, WherePredicate)
+     */
+    protected int updateWhere(Map<String, ?> assignments, WherePredicate<E> where) {
+        return updateWhere(assignments, true, where);
+    }
+
+    /**
+     * Update the entities matching the predicate without loading them, by a single statement (<code>update ... set ... where ...</code>, built by
+     * a JPA {@link CriteriaUpdate}, so the properties are validated and the values are bound as parameters).
+     * <p>
+     * The entity cache is invalidated (and hibernate invalidates the second-level cache region). No versions are incremented, no events are fired.
+     *
+     * @param assignments New values by property names (no paths).
+     * @param evict       If <code>true</code>, the entities of the session matching the predicate are evicted before the update (selected by their
+     *                    ids, if the session contains entities of this type), so they are reloaded by the next access. <b>Otherwise the updated
+     *                    entities of the session are stale!</b>
+     * @param where       Predicate on the root of the entity, e.g. <code>(cb, root) -&gt; cb.equal(root.get("status"), status)</code>. (It may be
+     *                    called several times.)
+     * @return The number of updated entities.
+     * @throws IllegalArgumentException if there are no assignments, or an assigned property does not exist.
+     */
+    protected int updateWhere(Map<String, ?> assignments, boolean evict, WherePredicate<E> where) {
+        checkAssignments(assignments);
+        long startTime = System.nanoTime();
+        Session session = getCurrentSession();
+        CriteriaBuilder cb = session.getCriteriaBuilder();
+        CriteriaUpdate<E> update = cb.createCriteriaUpdate(getEntityType());
+        Root<E> root = update.from(getEntityType());
+        assignments.forEach(update::set);
+        update.where(where.toPredicate(cb, root));
+        Set<Object> matchingEntities = evict ? getMatchingManagedEntities(where) : Collections.emptySet();
+        int count = session.createQuery(update).executeUpdate();
+        matchingEntities.forEach(session::evict);
+        invalidateAllCached();
+        recordQuery("updateWhere", startTime, count, "criteria update of " + assignments.keySet(), null);
+        return count;
+    }
+
+    /**
+     * Update the entities matching the hql where-clause without loading them, evicting the entities of this type from the session.
+     *
+     * @see #updateWhere(Map, boolean, String, Object...)
+     */
+    protected int updateWhere(Map<String, ?> assignments, String where, Object... params) {
+        return updateWhere(assignments, true, where, params);
+    }
+
+    /**
+     * Update the entities matching the hql where-clause without loading them, by a single HQL statement (<code>update ... set ... where
+     * ...</code>).
+     * <p>
+     * The entity cache is invalidated (and hibernate invalidates the second-level cache region). No versions are incremented, no events are fired.
+     * <br>
+     * (Prefer {@link #updateWhere(Map, boolean, WherePredicate)}, which evicts the updated entities only.)
+     *
+     * @param assignments New values by property names (no paths). Their named parameters do not collide with the named parameters given.
+     * @param evict       If <code>true</code>, <b>all</b> entities of this type are evicted from the session (the updated ones are not known), so they
+     *                    are reloaded by the next access (and unflushed changes of them are lost). <b>Otherwise the entities of the session are
+     *                    stale!</b>
+     * @param where       HQL where-clause (without 'where') referring to the properties of the entity, e.g. "status = ? and created &lt; ?".
+     * @param params      can be added by position '?' and a list of objects, or a single Map<String:Object> must be given.
+     * @return The number of updated entities.
+     * @throws IllegalArgumentException if there are no assignments, or an assigned property does not exist.
+     */
+    protected int updateWhere(Map<String, ?> assignments, boolean evict, String where, Object... params) {
+        checkAssignments(assignments);
+        boolean named = params != null && params.length == 1 && params[0] instanceof Map;
+        Map<String, Object> paramMap = named ? new HashMap<>((Map<String, Object>) params[0]) : null;
+        String prefix = "assignment";
+        while (named && containsKeyWithPrefix(paramMap, prefix)) {
+            prefix = "_" + prefix;
+        }
+        StringBuilder hql = new StringBuilder("update ").append(getEntityType().getName()).append(" set ");
+        List<Object> values = new ArrayList<>();
+        for (Map.Entry<String, ?> assignment : assignments.entrySet()) {
+            hql.append(values.isEmpty() ? "" : ", ").append(assignment.getKey()).append(" = ");
+            if (named) {
+                hql.append(':').append(prefix).append(values.size());
+                paramMap.put(prefix + values.size(), assignment.getValue());
+            } else {
+                hql.append('?');
+            }
+            values.add(assignment.getValue());
+        }
+        // The values of the positional assignments precede the parameters of the where-clause
+        Object[] allParams;
+        if (named) {
+            allParams = new Object[] { paramMap };
+        } else {
+            if (params != null) {
+                values.addAll(Arrays.asList(params));
+            }
+            allParams = values.toArray();
+        }
+        int count = executeWhere("updateWhere", hql.append(" where ").append(where).toString(), evict, where, allParams);
+        invalidateAllCached();
+        return count;
+    }
+
+    private void checkAssignments(Map<String, ?> assignments) {
+        if (assignments.isEmpty()) {
+            throw new IllegalArgumentException("No assignments given for update of " + getEntityType());
+        }
+        List<String> propertyNames = Arrays.asList(getEntityPersister().getPropertyNames());
+        for (String property : assignments.keySet()) {
+            if (!propertyNames.contains(property)) {
+                throw new IllegalArgumentException("Unknown property of " + getEntityType() + ": " + property);
+            }
+        }
+    }
+
+    private static boolean containsKeyWithPrefix(Map<String, ?> map, String prefix) {
+        return map.keySet().stream().anyMatch(key -> key.startsWith(prefix));
+    }
+
+    /**
+     * Delete the entities matching the predicate without loading them, evicting the deleted entities from the session.
+     *
+     * @see #deleteWhere(boolean, WherePredicate)
+     */
+    protected int deleteWhere(WherePredicate<E> where) {
+        return deleteWhere(true, where);
+    }
+
+    /**
+     * Delete the entities matching the predicate without loading them, by a single statement (<code>delete ... where ...</code>, built by a JPA
+     * {@link CriteriaDelete}).
+     * <p>
+     * The entity cache is cleared, even if the entities are {@link Immutable}. No cascades are done, no events are fired.
+     *
+     * @param evict If <code>true</code>, the entities of the session matching the predicate are evicted before the delete (selected by their ids, if
+     *              the session contains entities of this type). <b>Otherwise the session may contain deleted entities!</b>
+     * @param where Predicate on the root of the entity, e.g. <code>(cb, root) -&gt; cb.lessThan(root.get("created"), date)</code>. (It may be called
+     *              several times.)
+     * @return The number of deleted entities.
+     */
+    protected int deleteWhere(boolean evict, WherePredicate<E> where) {
+        long startTime = System.nanoTime();
+        Session session = getCurrentSession();
+        CriteriaBuilder cb = session.getCriteriaBuilder();
+        CriteriaDelete<E> delete = cb.createCriteriaDelete(getEntityType());
+        delete.where(where.toPredicate(cb, delete.from(getEntityType())));
+        Set<Object> matchingEntities = evict ? getMatchingManagedEntities(where) : Collections.emptySet();
+        int count = session.createQuery(delete).executeUpdate();
+        matchingEntities.forEach(session::evict);
+        removeAllCached();
+        recordQuery("deleteWhere", startTime, count, "criteria delete", null);
+        return count;
+    }
+
+    /**
+     * Delete the entities matching the hql where-clause without loading them, evicting the entities of this type from the session.
+     *
+     * @see #deleteWhere(boolean, String, Object...)
+     */
+    protected int deleteWhere(String where, Object... params) {
+        return deleteWhere(true, where, params);
+    }
+
+    /**
+     * Delete the entities matching the hql where-clause without loading them, by a single HQL statement (<code>delete ... where ...</code>).
+     * <p>
+     * The entity cache is cleared, even if the entities are {@link Immutable}. No cascades are done, no events are fired.<br>
+     * (Prefer {@link #deleteWhere(boolean, WherePredicate)}, which evicts the deleted entities only.)
+     *
+     * @param evict  If <code>true</code>, <b>all</b> entities of this type are evicted from the session (the deleted ones are not known), and
+     *               unflushed changes of them are lost. <b>Otherwise the session may contain deleted entities!</b>
+     * @param where  HQL where-clause (without 'where') referring to the properties of the entity, e.g. "status = ? and created &lt; ?".
+     * @param params can be added by position '?' and a list of objects, or a single Map<String:Object> must be given.
+     * @return The number of deleted entities.
+     */
+    protected int deleteWhere(boolean evict, String where, Object... params) {
+        String hql = "delete from " + getEntityType().getName() + " where " + where;
+        int count = executeWhere("deleteWhere", hql, evict, where, params);
+        removeAllCached();
+        return count;
+    }
+
+    private void removeAllCached() {
+        EntityCache<E> cache = entityCache;
+        if (cache != null) {
+            EntityCacheInvalidation.removeAll(cache);
+        }
+    }
+
+    private int executeWhere(String method, String hql, boolean evict, String where, Object... params) {
+        long startTime = System.nanoTime();
+        Query hqlQuery = getCurrentSession().createQuery(hql);
+        setQueryParameter(hqlQuery, params);
+        int count = hqlQuery.executeUpdate();
+        if (evict) {
+            Session session = getCurrentSession();
+            for (Object entity : getManagedEntities()) {
+                session.evict(entity);
+            }
+        }
+        recordQuery(method, startTime, count, where, params);
+        return count;
+    }
+
+    /**
+     * Returns the entities of this Dao managed by the session, which match the predicate (selected by their ids in chunks).
+     */
+    private Set<Object> getMatchingManagedEntities(WherePredicate<E> where) {
+        Set<Object> matchingEntities = Collections.newSetFromMap(new IdentityHashMap<>());
+        Session session = getCurrentSession();
+        Map<Long, Object> managedEntitiesById = new HashMap<>();
+        for (Object entity : getManagedEntities()) {
+            managedEntitiesById.put((Long) session.getIdentifier(entity), entity);
+        }
+        CriteriaBuilder cb = session.getCriteriaBuilder();
+        for (List<Long> chunk : IdChunks.split(managedEntitiesById.keySet(), inListSize)) {
+            CriteriaQuery<Long> query = cb.createQuery(Long.class);
+            Root<E> root = query.from(getEntityType());
+            query.select(root.<Long> get(ID_PROPERTY)).where(where.toPredicate(cb, root), root.get(ID_PROPERTY).in(chunk));
+            for (Long id : session.createQuery(query).getResultList()) {
+                matchingEntities.add(managedEntitiesById.get(id));
+            }
+        }
+        return matchingEntities;
+    }
+
+    protected Query createHql(String hql, Object... params) {
+        Query hqlQuery = getCurrentSession().createQuery(hql);
+        if (isReadOnlyMode()) {
+            hqlQuery.setReadOnly(true);
+            hqlQuery.setHibernateFlushMode(FlushMode.MANUAL);
+        }
+        setQueryParameter(hqlQuery, params);
+        return hqlQuery;
+    }
+
+    /**
+     * Count the entities matching the {@link Criterion}s (by <code>count(*)</code>, no entities are loaded).
+     */
+    protected long count(Criterion... criterions) {
+        long startTime = System.nanoTime();
+        Criteria criteria = projectionCriteria(Projections.rowCount(), criterions);
+        long count = ((Number) criteria.uniqueResult()).longValue();
+        recordQuery("count", startTime, 1, criteria, null);
+        return count;
+    }
+
+    /**
+     * Returns <code>true</code>, if there is an entity matching the {@link Criterion}s (by selecting at most one id, no entity is loaded).
+     */
+    protected boolean exists(Criterion... criterions) {
+        long startTime = System.nanoTime();
+        Criteria criteria = projectionCriteria(Projections.id(), criterions).setMaxResults(1);
+        boolean exists = !criteria.list().isEmpty();
+        recordQuery("exists", startTime, exists ? 1 : 0, criteria, null);
+        return exists;
+    }
+
+    /**
+     * Count by the given hql-query, which must select the count, e.g. <code>select count(*) from Customer c where c.name = ?</code>
+     *
+     * @param hql    HQL query string.
+     * @param params can be added by position '?' and a list of objects, or a single Map<String:Object> must be given.
+     */
+    protected long countByHql(String hql, Object... params) {
+        long startTime = System.nanoTime();
+        long count = ((Number) createHql(hql, params).uniqueResult()).longValue();
+        recordQuery("countByHql", startTime, 1, hql, params);
+        return count;
+    }
+
+    /**
+     * Returns <code>true</code>, if the given hql-query has a result. Only the first row is fetched.
+     * <p>
+     * The query should select a scalar (like the id), so no entity is loaded, e.g. <code>select c.id from Customer c where c.name = ?</code>
+     *
+     * @param hql    HQL query string.
+     * @param params can be added by position '?' and a list of objects, or a single Map<String:Object> must be given.
+     */
+    protected boolean existsByHql(String hql, Object... params) {
+        long startTime = System.nanoTime();
+        boolean exists = !createHql(hql, params).setReadOnly(true).setMaxResults(1).list().isEmpty();
+        recordQuery("existsByHql", startTime, exists ? 1 : 0, hql, params);
+        return exists;
+    }
+
+    /**
+     * Count the rows of the given sql-query (by <code>SELECT COUNT(*) FROM (&lt;sql&gt;)</code>).
+     *
+     * @param sql    Any SQL query.
+     * @param params can be added by position '?' and a list of objects, or a single Map<String:Object> must be given.
+     */
+    protected long countBySql(String sql, Object... params) {
+        long startTime = System.nanoTime();
+        SQLQuery sqlQuery = getCurrentSession().createSQLQuery("SELECT COUNT(*) AS CNT FROM (" + sql + ") C").addScalar("CNT", LongType.INSTANCE);
+        setQueryParameter(sqlQuery, params);
+        long count = (Long) sqlQuery.uniqueResult();
+        recordQuery("countBySql", startTime, 1, sql, params);
+        return count;
+    }
+
+    /**
+     * Returns <code>true</code>, if the given sql-query has a result. Only the first row is fetched (limited by the dialect).
+     *
+     * @param sql    Any SQL query, should select a single column (like the id).
+     * @param params can be added by position '?' and a list of objects, or a single Map<String:Object> must be given.
+     */
+    protected boolean existsBySql(String sql, Object... params) {
+        long startTime = System.nanoTime();
+        SQLQuery sqlQuery = getCurrentSession().createSQLQuery(sql);
+        setQueryParameter(sqlQuery, params);
+        boolean exists = !sqlQuery.setMaxResults(1).list().isEmpty();
+        recordQuery("existsBySql", startTime, exists ? 1 : 0, sql, params);
+        return exists;
+    }
+
+    /**
+     * Query tuples by using a {@link Projection} and {@link Criterion}s.
+     * <p>
+     * No entities are hydrated and no distinct root entity transformation is done. Every row is returned as <code>Object[]</code>, even for a single
+     * projected property.
+     */
+    protected List<Object[]> queryTuples(Projection projection, Criterion... criterions) {
+        long startTime = System.nanoTime();
+        Criteria criteria = projectionCriteria(projection, criterions).setResultTransformer(TUPLE_TRANSFORMER);
+        List<Object[]> list = criteria.list();
+        recordQuery("queryTuples", startTime, list.size(), criteria, null);
+        return list;
+    }
+
+    /**
+     * Query DTOs by using a {@link Projection} and {@link Criterion}s.
+     * <p>
+     * The aliases of the projection must match the properties of the DTO, e.g.
+     * <code>Projections.projectionList().add(Projections.property("name"), "name")</code>. No entities are hydrated and no distinct root entity
+     * transformation is done.
+     *
+     * @param dtoType Type of the DTO, must have a public default constructor and setters.
+     */
+    protected <T> List<T> queryProjection(Class<T> dtoType, Projection projection, Criterion... criterions) {
+        long startTime = System.nanoTime();
+        Criteria criteria = projectionCriteria(projection, criterions).setResultTransformer(Transformers.aliasToBean(dtoType));
+        List<T> list = criteria.list();
+        recordQuery("queryProjection", startTime, list.size(), criteria, null);
+        return list;
+    }
+
+    private Criteria projectionCriteria(Projection projection, Criterion... criterions) {
+        return addCriterions(createCriteria(), criterions).setProjection(projection).setReadOnly(true);
+    }
+
+    /**
+     * Query DTOs (or scalars or <code>Object[]</code>) by the given hql-query, e.g. <code>select new com.acme.NameDto(c.id, c.name) from Customer c</code>.
+     * <p>
+     * The query is read-only, so no snapshots are taken for selected entities.
+     *
+     * @param resultType Type of the results (just for type-safety).
+     * @param hql        HQL query string.
+     * @param params     can be added by position '?' and a list of objects, or a single Map<String:Object> must be given.
+     */
+    protected <T> List<T> queryProjectionByHql(Class<T> resultType, String hql, Object... params) {
+        long startTime = System.nanoTime();
+        Query hqlQuery = createHql(hql, params).setReadOnly(true);
+        List<T> list = hqlQuery.list();
+        recordQuery("queryProjectionByHql", startTime, list.size(), hql, params);
+        return list;
+    }
+
+    /**
+     * Query a page by using {@link Criterion}s, seeking on the id (ascending).
+     * <p>
+     * Unlike offset based paging, every page costs the same, because the database seeks directly to the first entity of the page.
+     *
+     * @param continuationToken The token of the previous page ({@link Page#getContinuationToken()}) or <code>null</code> for the first page.
+     * @param pageSize          The maximum number of entities of the page.
+     */
+    protected Page<E> queryPage(String continuationToken, int pageSize, Criterion... criterions) {
+        return queryPage(null, true, continuationToken, pageSize, criterions);
+    }
+
+    /**
+     * Query a page by using {@link Criterion}s, seeking on the given sort property plus the id.
+     * <p>
+     * The sort property must be a non-null property of the entity (no path) and its values should be of a simple type (string, number, date, ...).
+     * The criterions and the sort must be the same for all pages.
+     *
+     * @param sortProperty      The sort property or <code>null</code> to sort by id only.
+     * @param ascending         Sort ascending or descending.
+     * @param continuationToken The token of the previous page ({@link Page#getContinuationToken()}) or <code>null</code> for the first page.
+     * @param pageSize          The maximum number of entities of the page.
+     * @throws IllegalArgumentException if the continuation token is invalid or does not match the sort property.
+     */
+    protected Page<E> queryPage(String sortProperty, boolean ascending, String continuationToken, int pageSize, Criterion... criterions) {
+        long startTime = System.nanoTime();
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be positive: " + pageSize);
+        }
+        Criteria criteria = addCriterions(createCriteria(), criterions);
+        if (continuationToken != null) {
+            KeysetToken token = KeysetToken.decode(continuationToken);
+            if (!Objects.equals(sortProperty, token.getSortProperty())) {
+                throw new IllegalArgumentException("Continuation token does not match sort property '" + sortProperty + "'");
+            }
+            criteria.add(seekCriterion(sortProperty, ascending, token));
+        }
+        if (sortProperty != null) {
+            criteria.addOrder(ascending ? Order.asc(sortProperty) : Order.desc(sortProperty));
+        }
+        criteria.addOrder(ascending ? Order.asc(ID_PROPERTY) : Order.desc(ID_PROPERTY));
+        criteria.setMaxResults(pageSize + 1);
+        List<E> list = criteria.list();
+        String nextToken = null;
+        if (list.size() > pageSize) {
+            list = new ArrayList<>(list.subList(0, pageSize));
+            nextToken = createKeysetToken(sortProperty, list.get(pageSize - 1)).encode();
+        }
+        recordQuery("queryPage", startTime, list.size(), criteria, null);
+        return new Page<>(list, nextToken);
+    }
+
+    private Criterion seekCriterion(String sortProperty, boolean ascending, KeysetToken token) {
+        Criterion idCriterion = ascending ? Restrictions.gt(ID_PROPERTY, token.getId()) : Restrictions.lt(ID_PROPERTY, token.getId());
+        if (sortProperty == null) {
+            return idCriterion;
+        }
+        Object sortValue = token.getSortValue();
+        Criterion sortCriterion = ascending ? Restrictions.gt(sortProperty, sortValue) : Restrictions.lt(sortProperty, sortValue);
+        return Restrictions.or(sortCriterion, Restrictions.and(Restrictions.eq(sortProperty, sortValue), idCriterion));
+    }
+
+    private KeysetToken createKeysetToken(String sortProperty, E last) {
+        Object sortValue = null;
+        if (sortProperty != null) {
+            sortValue = getCurrentSession().getSessionFactory().getClassMetadata(getEntityType()).getPropertyValue(last, sortProperty);
+            if (sortValue == null) {
+                throw new IllegalStateException("Sort property '" + sortProperty + "' of " + last + " is null. Keyset pagination needs non-null values.");
+            }
+        }
+        return new KeysetToken(sortProperty, sortValue, getCurrentSession().getIdentifier(last));
+    }
+
+    /**
+     * Run the given work asynchronously in its own read-only transaction (with its own session).
+     * <p>
+     * The number of concurrently running calls is limited by {@link #getAsyncConcurrency()}. The returned entities are detached, so lazy associations
+     * must be initialized by the work itself.
+     *
+     * @see #setAsyncExecutor(ExecutorService)
+     */
+    protected <R> CompletableFuture<R> supplyAsync(Supplier<R> work) {
+        return getAsyncRunner().supply(work);
+    }
+
+    /**
+     * Find entity by id asynchronously.
+     *
+     * @see #supplyAsync(Supplier)
+     */
+    public CompletableFuture<E> findByIdAsync(long id) {
+        return supplyAsync(() -> findById(id));
+    }
+
+    /**
+     * Query all - really all!! - using the given order asynchronously.
+     *
+     * @see #supplyAsync(Supplier)
+     */
+    public CompletableFuture<List<E>> queryAllAsync(Order... orders) {
+        return supplyAsync(() -> queryAll(orders));
+    }
+
+    /**
+     * Query by using {@link Criterion}s asynchronously.
+     *
+     * @see #supplyAsync(Supplier)
+     */
+    protected CompletableFuture<List<E>> queryAsync(Criterion... criterions) {
+        return supplyAsync(() -> query(criterions));
+    }
+
+    /**
+     * Query entities by the given hql-query asynchronously.
+     *
+     * @param hql    HQL query string.
+     * @param params can be added by position '?' and a list of objects, or a single Map<String:Object> must be given.
+     * @see #supplyAsync(Supplier)
+     */
+    protected CompletableFuture<List<E>> queryByHqlAsync(String hql, Object... params) {
+        return supplyAsync(() -> queryByHql(hql, params));
+    }
+
+    /**
+     * Scan all - really all!! - entities in parallel, splitting the id space into ranges.
+     *
+     * @see #scanPartitioned(int, long, Consumer, Criterion...)
+     */
+    public long scanAllPartitioned(int parallelism, long rangeSize, Consumer<? super E> processor) {
+        return scanPartitioned(parallelism, rangeSize, processor);
+    }
+
+    /**
+     * Scan the entities matching the {@link Criterion}s in parallel, e.g. for reindexing or exports.
+     * <p>
+     * The id space (between the minimum and maximum id of the matching entities) is split into ranges of <code>rangeSize</code> ids. Every range
+     * is loaded (ordered by id) and processed by a worker thread in its own read-only transaction, so the loaded entities are read-only. At most
+     * <code>parallelism</code> ranges are processed at the same time, the calling thread blocks until a worker is free. So at most
+     * <code>parallelism * rangeSize</code> entities are in memory.<br>
+     * <b>The processor is called concurrently by the worker threads!</b> The parallelism should not exceed the size of the connection pool.
+     *
+     * @param parallelism Number of worker threads (and connections).
+     * @param rangeSize   Number of ids per range.
+     * @param processor   Gets every entity.
+     * @return The number of processed entities.
+     * @throws ServiceRuntimeException if a range failed (no more ranges are started then).
+     */
+    protected long scanPartitioned(int parallelism, long rangeSize, Consumer<? super E> processor, Criterion... criterions) {
+        long startTime = System.nanoTime();
+        PartitionedScan scan = new PartitionedScan(transactionManager, parallelism, rangeSize);
+        Object[] bounds = scan.inTransaction(() -> (Object[]) projectionCriteria(
+                Projections.projectionList().add(Projections.min(ID_PROPERTY)).add(Projections.max(ID_PROPERTY)), criterions).uniqueResult());
+        long count = 0;
+        if (bounds != null && bounds[0] != null) {
+            Criterion[] rangeCriterions = Arrays.copyOf(criterions, criterions.length + 1);
+            count = scan.run(getEntityType().getSimpleName(), ((Number) bounds[0]).longValue(), ((Number) bounds[1]).longValue(), (fromId, toId) -> {
+                Criterion[] criterionsOfRange = rangeCriterions.clone();
+                criterionsOfRange[criterions.length] = Restrictions.between(ID_PROPERTY, fromId, toId);
+                List<E> list = criteriaWithCriterions(Distinct.NONE, criterionsOfRange).addOrder(Order.asc(ID_PROPERTY)).list();
+                list.forEach(processor);
+                return list.size();
+            });
+        }
+        recordQuery("scanPartitioned", startTime, (int) Math.min(count, Integer.MAX_VALUE), criterions, null);
+        return count;
+    }
+
+    /**
+     * Stream all - really all!! - using the given order.
+     * <p>
+     * The entities are read by a forward-only cursor and evicted from the session after being consumed, so the memory consumption stays flat.
+     * Entities already managed by the session before (e.g. loaded or modified by the caller) are returned as they are and stay managed.<br>
+     * <b>Entities loaded by the stream are detached after being consumed, so changes to them are not flushed!</b><br>
+     * <b>The stream must be closed (e.g. by try-with-resources) to close the cursor!</b><br>
+     * No distinct root entity transformation is done.
+     */
+    public Stream<E> streamAll(Order... orders) {
+        long startTime = System.nanoTime();
+        Criteria criteria = createCriteria();
+        for (Order order : orders) {
+            criteria.addOrder(order);
+        }
+        LOG.trace("Stream all of {}", getEntityType());
+        return recordOnClose("streamAll", startTime, streamResults(scroll(criteria)), criteria, null);
+    }
+
+    /**
+     * Stream by using {@link Criterion}s.
+     *
+     * @see #streamAll(Order...) for notes about closing the stream.
+     */
+    protected Stream<E> stream(Criterion... criterions) {
+        long startTime = System.nanoTime();
+        Criteria criteria = addCriterions(createCriteria(), criterions);
+        LOG.trace("Stream for {} by {}", getEntityType(), criterions);
+        return recordOnClose("stream", startTime, streamResults(scroll(criteria)), criterions, null);
+    }
+
+    /**
+     * Stream by using {@link Criterion}s and an {@link Order}.
+     *
+     * @see #streamAll(Order...) for notes about closing the stream.
+     */
+    protected Stream<E> stream(Order order, Criterion... criterions) {
+        long startTime = System.nanoTime();
+        Criteria criteria = addCriterions(createCriteria(), criterions).addOrder(order);
+        LOG.trace("Stream for {} by {} order {}", getEntityType(), criterions, order);
+        return recordOnClose("stream", startTime, streamResults(scroll(criteria)), criteria, null);
+    }
+
+    /**
+     * Stream by user-defined criteria.
+     *
+     * @see #streamAll(Order...) for notes about closing the stream.
+     */
+    protected Stream<E> stream(CriteriaModifier cm) {
+        long startTime = System.nanoTime();
+        Criteria criteria = createCriteria();
+        cm.modify(criteria);
+        LOG.trace("Stream for {} by {}", getEntityType(), criteria);
+        return recordOnClose("stream", startTime, streamResults(scroll(criteria)), criteria, null);
+    }
+
+    /**
+     * Stream entities by the given hql-query.
+     *
+     * @param hql    HQL query string.
+     * @param params can be added by position '?' and a list of objects, or a single Map<String:Object> must be given.
+     * @see #streamAll(Order...) for notes about closing the stream.
+     */
+    protected Stream<E> streamByHql(String hql, Object... params) {
+        long startTime = System.nanoTime();
+        Query hqlQuery = createHql(hql, params);
+        LOG.trace("Stream for {} by '{}'", getEntityType(), hql);
+        return recordOnClose("streamByHql", startTime, streamResults(scroll(hqlQuery)), hql, params);
+    }
+
+    /**
+     * Stream entities by the given sql-query.
+     * <p>
+     * The ids are read by a forward-only cursor, the entities are loaded in chunks of {@link #getFetchSize()} ids, keeping the order of the ids.
+     *
+     * @param sql    The SQL must return just the id-field aliased as 'id'.
+     * @param params can be added by position '?' and a list of objects, or a single Map<String:Object> must be given.
+     * @see #streamAll(Order...) for notes about closing the stream.
+     */
+    protected Stream<E> streamBySqlUsingId(String sql, Object... params) {
+        long startTime = System.nanoTime();
+        SQLQuery sqlQuery = createSqlUsingId(sqlUsingIdTemplate(sql), params);
+        LOG.trace("Stream for {} by '{}'", getEntityType(), sql);
+        ScrollingIterator<Long> ids = new ScrollingIterator<>(getCurrentSession(), scroll(sqlQuery), null, Collections.emptySet());
+        ChunkLoadingIterator<E> iterator = new ChunkLoadingIterator<>(getCurrentSession(), ids, fetchSize, this::loadByIds,
+                id -> getFromSession(id) != null);
+        return recordOnClose("streamBySqlUsingId", startTime, toStream(iterator).onClose(iterator::close), sql, params);
+    }
+
+    /**
+     * Open a forward-only cursor for the given {@link Criteria}.
+     * <p>
+     * <b>The {@link ScrollableResults} must be closed!</b>
+     */
+    protected ScrollableResults scroll(Criteria criteria) {
+        return criteria.setFetchSize(fetchSize).scroll(ScrollMode.FORWARD_ONLY);
+    }
+
+    /**
+     * Open a forward-only cursor for the given {@link Query}.
+     * <p>
+     * <b>The {@link ScrollableResults} must be closed!</b>
+     */
+    protected ScrollableResults scroll(Query query) {
+        return query.setFetchSize(fetchSize).scroll(ScrollMode.FORWARD_ONLY);
+    }
+
+    /**
+     * Stream the given {@link ScrollableResults}, evicting every consumed entity (except the ones already managed by the session before). Closing
+     * the {@link Stream} closes the {@link ScrollableResults}.
+     */
+    protected Stream<E> streamResults(ScrollableResults results) {
+        ScrollingIterator<E> iterator = new ScrollingIterator<>(getCurrentSession(), results, getEntityType(), getManagedEntities());
+        return toStream(iterator).onClose(iterator::close);
+    }
+
+    /**
+     * Records the query when the stream is closed, with the number of consumed entities as rows and the lifetime of the stream as runtime.
+     */
+    private Stream<E> recordOnClose(String method, long startTime, Stream<E> stream, Object query, Object[] params) {
+        int[] rows = new int[1];
+        return stream.peek(entity -> rows[0]++).onClose(() -> recordQuery(method, startTime, rows[0], query, params));
+    }
+
+    /**
+     * Returns the entities of this Dao currently managed by the session (as identity set).
+     */
+    private Set<Object> getManagedEntities() {
+        Set<Object> managedEntities = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Object entity : ((SessionImplementor) getCurrentSession()).getPersistenceContext().getEntitiesByKey().values()) {
+            if (getEntityType().isInstance(entity)) {
+                managedEntities.add(entity);
+            }
+        }
+        return managedEntities;
+    }
+
+    static <T> Stream<T> toStream(Iterator<T> iterator) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    protected interface CriteriaModifier {
+        void modify(Criteria criteria);
+    }
+
+    /**
+     * Typed where-clause of {@link BaseRepository#updateWhere(Map, boolean, WherePredicate)} and {@link BaseRepository#deleteWhere(boolean,
+     * WherePredicate)}.
+     */
+    protected interface WherePredicate<T> {
+        Predicate toPredicate(CriteriaBuilder cb, Root<T> root);
     }
 }
@@ -0,0 +1,213 @@
+/*
+ * tksCommons / mugwort
+ *
+ * Author : Thomas Kuhlmann (ThK-Systems, http://oss.thk-systems.de) License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+package de.thksystems.persistence.hibernate;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import org.hibernate.Criteria;
+import org.hibernate.Query;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.StatelessSession;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.Order;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+
+/**
+ * Bulk operations of a {@link BaseRepository} by a {@link StatelessSession}, e.g. for ETL-like jobs.
+ * <p>
+ * There is no first-level cache, so there are no snapshots, no dirty checking and no growing memory consumption. Every operation is executed
+ * immediately (JDBC-batched by the given batch size). Cascades, collections, interceptors and events are not supported. Lazy associations of
+ * loaded entities cannot be initialized.
+ * <p>
+ * The bulk session uses the connection (and so the transaction) of the current session, which is flushed on opening.<br>
+ * <b>The bulk session must be closed (e.g. by try-with-resources) to execute the last JDBC batch!</b>
+ *
+ * @see BaseRepository#openBulkSession()
+ */
+public class BulkSession<E extends Serializable> implements AutoCloseable {
+
+    private final BaseRepository<E> repository;
+    private final StatelessSession session;
+    private final int batchSize;
+
+    private boolean modified;
+    private boolean closed;
+
+    BulkSession(BaseRepository<E> repository, StatelessSession session, int batchSize) {
+        this.repository = repository;
+        this.session = session;
+        this.batchSize = batchSize;
+        session.setJdbcBatchSize(batchSize);
+    }
+
+    /**
+     * Returns the JDBC batch size.
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Insert the entity.
+     *
+     * @return The id of the entity.
+     */
+    public Serializable insert(E entity) {
+        modified = true;
+        return session.insert(entity);
+    }
+
+    /**
+     * Insert all entities.
+     *
+     * @return The number of inserted entities.
+     */
+    public int insertAll(Iterable<? extends E> entities) {
+        return forAll("bulkInsertAll", entities, session::insert);
+    }
+
+    /**
+     * Update the (detached) entity.
+     */
+    public void update(E entity) {
+        modified = true;
+        session.update(entity);
+    }
+
+    /**
+     * Update all (detached) entities.
+     *
+     * @return The number of updated entities.
+     */
+    public int updateAll(Iterable<? extends E> entities) {
+        return forAll("bulkUpdateAll", entities, session::update);
+    }
+
+    /**
+     * Delete the entity.
+     */
+    public void delete(E entity) {
+        modified = true;
+        session.delete(entity);
+    }
+
+    /**
+     * Delete all entities.
+     *
+     * @return The number of deleted entities.
+     */
+    public int deleteAll(Iterable<? extends E> entities) {
+        return forAll("bulkDeleteAll", entities, session::delete);
+    }
+
+    private int forAll(String method, Iterable<? extends E> entities, Consumer<E> action) {
+        long startTime = System.nanoTime();
+        modified = true;
+        int count = 0;
+        for (E entity : entities) {
+            action.accept(entity);
+            count++;
+        }
+        flush();
+        repository.recordQuery(method, startTime, count, null, null);
+        return count;
+    }
+
+    /**
+     * Stream by using {@link Criterion}s.
+     * <p>
+     * The entities are read by a forward-only cursor with the fetch size of the repository, they are detached.<br>
+     * <b>The stream must be closed (e.g. by try-with-resources) to close the cursor!</b>
+     */
+    public Stream<E> stream(Criterion... criterions) {
+        return stream((Order) null, criterions);
+    }
+
+    /**
+     * Stream by using {@link Criterion}s and an {@link Order}.
+     *
+     * @see #stream(Criterion...) for notes about closing the stream.
+     */
+    public Stream<E> stream(Order order, Criterion... criterions) {
+        flush();
+        Criteria criteria = session.createCriteria(repository.getEntityType());
+        for (Criterion criterion : criterions) {
+            criteria.add(criterion);
+        }
+        if (order != null) {
+            criteria.addOrder(order);
+        }
+        BaseRepository.LOG.trace("Bulk stream for {} by {}", repository.getEntityType(), criteria);
+        ScrollableResults results = criteria.setFetchSize(repository.getFetchSize()).scroll(ScrollMode.FORWARD_ONLY);
+        ScrollingIterator<E> iterator = new ScrollingIterator<>(null, results, null, Collections.emptySet());
+        return BaseRepository.toStream(iterator).onClose(iterator::close);
+    }
+
+    /**
+     * Stream entities by the given hql-query.
+     *
+     * @param hql    HQL query string.
+     * @param params can be added by position '?' and a list of objects, or a single Map<String:Object> must be given.
+     * @see #stream(Criterion...) for notes about closing the stream.
+     */
+    public Stream<E> streamByHql(String hql, Object... params) {
+        flush();
+        Query hqlQuery = session.createQuery(hql);
+        BaseRepository.setQueryParameter(hqlQuery, params);
+        BaseRepository.LOG.trace("Bulk stream for {} by '{}'", repository.getEntityType(), hql);
+        ScrollableResults results = hqlQuery.setFetchSize(repository.getFetchSize()).scroll(ScrollMode.FORWARD_ONLY);
+        ScrollingIterator<E> iterator = new ScrollingIterator<>(null, results, null, Collections.emptySet());
+        return BaseRepository.toStream(iterator).onClose(iterator::close);
+    }
+
+    /**
+     * Execute an update by the given hql.
+     *
+     * @param hql    HQL string.
+     * @param params can be added by position '?' and a list of objects, or a single Map<String:Object> must be given.
+     */
+    public int executeUpdateByHql(String hql, Object... params) {
+        long startTime = System.nanoTime();
+        flush();
+        Query hqlQuery = session.createQuery(hql);
+        BaseRepository.setQueryParameter(hqlQuery, params);
+        int count = hqlQuery.executeUpdate();
+        modified = true;
+        flush();
+        repository.recordQuery("bulkExecuteUpdateByHql", startTime, count, hql, params);
+        return count;
+    }
+
+    /**
+     * Executes the pending JDBC batch and invalidates the entity cache of the repository (if modified).
+     */
+    public void flush() {
+        ((SharedSessionContractImplementor) session).getJdbcCoordinator().executeBatch();
+        if (modified) {
+            repository.invalidateAllCached();
+            modified = false;
+        }
+    }
+
+    /**
+     * Executes the pending JDBC batch and closes the bulk session. (The connection is not closed.)
+     */
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            try {
+                flush();
+            } finally {
+                session.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * tksCommons / mugwort
+ *
+ * Author : Thomas Kuhlmann (ThK-Systems, http://oss.thk-systems.de) License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+package de.thksystems.persistence.hibernate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.LongPredicate;
+
+import org.hibernate.Session;
+
+/**
+ * {@link Iterator} loading entities chunk by chunk for the ids delivered by another {@link Iterator}.
+ * <p>
+ * The order of the ids is kept. Ids without entity are skipped. Consumed entities are evicted from the {@link Session}, unless they were already
+ * managed by the session before their chunk was loaded.
+ */
+class ChunkLoadingIterator<E> implements Iterator<E>, AutoCloseable {
+
+    private final Session session;
+    private final ScrollingIterator<Long> ids;
+    private final int chunkSize;
+    private final Function<List<Long>, List<E>> loader;
+    private final LongPredicate managed;
+
+    private Iterator<E> chunk;
+    private Set<E> managedBefore = Collections.emptySet();
+    private E current;
+
+    /**
+     * @param managed Tells, if the entity with the given id is managed by the session (without hitting the database).
+     */
+    ChunkLoadingIterator(Session session, ScrollingIterator<Long> ids, int chunkSize, Function<List<Long>, List<E>> loader, LongPredicate managed) {
+        this.session = session;
+        this.ids = ids;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.loader = loader;
+        this.managed = managed;
+    }
+
+    @Override
+    public boolean hasNext() {
+        evictCurrent();
+        while ((chunk == null || !chunk.hasNext()) && ids.hasNext()) {
+            chunk = loadNextChunk().iterator();
+        }
+        return chunk != null && chunk.hasNext();
+    }
+
+    @Override
+    public E next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        current = chunk.next();
+        return current;
+    }
+
+    private List<E> loadNextChunk() {
+        List<Long> idChunk = new ArrayList<>(chunkSize);
+        while (idChunk.size() < chunkSize && ids.hasNext()) {
+            idChunk.add(ids.next());
+        }
+        List<Long> managedIds = new ArrayList<>();
+        for (Long id : idChunk) {
+            if (managed.test(id)) {
+                managedIds.add(id);
+            }
+        }
+        Map<Object, E> entitiesById = new HashMap<>();
+        for (E entity : loader.apply(idChunk)) {
+            entitiesById.put(session.getIdentifier(entity), entity);
+        }
+        managedBefore = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Long id : managedIds) {
+            E entity = entitiesById.get(id);
+            if (entity != null) {
+                managedBefore.add(entity);
+            }
+        }
+        List<E> ordered = new ArrayList<>(idChunk.size());
+        for (Long id : idChunk) {
+            E entity = entitiesById.get(id);
+            if (entity != null) {
+                ordered.add(entity);
+            }
+        }
+        return ordered;
+    }
+
+    private void evictCurrent() {
+        if (current != null) {
+            evict(current);
+            current = null;
+        }
+    }
+
+    private void evict(E entity) {
+        if (!managedBefore.contains(entity)) {
+            session.evict(entity);
+        }
+    }
+
+    /**
+     * Evicts the last consumed entity and the not yet consumed ones of the current chunk and closes the id cursor.
+     */
+    @Override
+    public void close() {
+        evictCurrent();
+        while (chunk != null && chunk.hasNext()) {
+            evict(chunk.next());
+        }
+        ids.close();
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * tksCommons / mugwort
+ *
+ * Author : Thomas Kuhlmann (ThK-Systems, http://oss.thk-systems.de) License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+package de.thksystems.persistence.hibernate;
+
+import org.hibernate.Criteria;
+
+/**
+ * Strategy to get distinct root entities from criteria queries with joins.
+ */
+public enum Distinct {
+
+    /**
+     * No de-duplication. Best for queries without joins to collections.
+     */
+    NONE,
+
+    /**
+     * The distinct ids are selected by the database, the entities are loaded by a second query.
+     * <p>
+     * Best for queries joining collections for restrictions only. The order properties are selected together with the ids, because some databases
+     * (like H2 and PostgreSQL) require them in the select list of a distinct query. So orders must be on properties of the root or of aliased joins.
+     */
+    SQL,
+
+    /**
+     * The whole join result is materialized and de-duplicated in memory ({@link Criteria#DISTINCT_ROOT_ENTITY}).
+     * <p>
+     * Needed for queries fetch-joining collections.
+     */
+    IN_MEMORY
+}
@@ -0,0 +1,164 @@
+/*
+ * tksCommons / mugwort
+ *
+ * Author : Thomas Kuhlmann (ThK-Systems, http://oss.thk-systems.de) License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+package de.thksystems.persistence.hibernate;
+
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Read-through cache of a {@link BaseRepository} for entities by id, with a maximum size (least recently used entries are evicted) and a time to
+ * live.
+ * <p>
+ * The cached entities are detached snapshots of the committed state: They are loaded by a separate stateless session after the commit of the
+ * transaction, which missed them (see {@link EntityCacheLoader}), so neither uncommitted changes nor instances managed by a session are cached. They
+ * are shared between sessions and threads. So the cache should be used for reference data only, which is never modified by the application and
+ * has no lazy associations.
+ * <p>
+ * Modifications invalidate the cache immediately and again after the completion of the modifying transaction (see {@link EntityCacheInvalidation}),
+ * so an old state loaded concurrently before the commit is dropped.
+ *
+ * @see BaseRepository#enableEntityCache(int, long, TimeUnit)
+ */
+public class EntityCache<E> {
+
+    private final LruCache<Serializable, Entry<E>> cache;
+    private final long ttlNanos;
+    private final boolean invalidating;
+    private final AtomicLong version = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    EntityCache(int maxSize, long ttl, TimeUnit unit, boolean invalidating) {
+        this.cache = new LruCache<>(maxSize);
+        this.ttlNanos = unit.toNanos(ttl);
+        this.invalidating = invalidating;
+    }
+
+    /**
+     * Returns the cached entity, or <code>null</code>, if not cached or expired.
+     */
+    E get(Serializable id) {
+        Entry<E> entry = cache.get(id);
+        if (entry != null && ttlNanos > 0 && entry.isExpired(System.nanoTime())) {
+            cache.remove(id);
+            entry = null;
+        }
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.entity;
+    }
+
+    /**
+     * Returns the version of the cache, which is incremented by every invalidation.
+     */
+    long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Caches the entity, unless the cache was invalidated since the given version (because the entity may have been loaded before).
+     */
+    void put(Serializable id, E entity, long loadedVersion) {
+        if (version.get() == loadedVersion) {
+            cache.put(id, new Entry<>(entity, System.nanoTime() + ttlNanos));
+            if (version.get() != loadedVersion) {
+                cache.remove(id);
+            }
+        }
+    }
+
+    /**
+     * Removes the entity with the given id (if the cache is invalidating).
+     */
+    void invalidate(Serializable id) {
+        if (invalidating && id != null) {
+            version.incrementAndGet();
+            if (cache.remove(id) != null) {
+                invalidations.increment();
+            }
+        }
+    }
+
+    /**
+     * Removes all entities (if the cache is invalidating).
+     */
+    void invalidateAll() {
+        if (invalidating) {
+            version.incrementAndGet();
+            invalidations.add(cache.size());
+            cache.clear();
+        }
+    }
+
+    /**
+     * Removes all entities, even if the cache is not invalidating (e.g. after deleting entities, which must never be returned by the cache).
+     */
+    void removeAll() {
+        version.incrementAndGet();
+        invalidations.add(cache.size());
+        cache.clear();
+    }
+
+    /**
+     * Returns <code>false</code>, if the entities are immutable and so the cache is not invalidated on modifications.
+     */
+    public boolean isInvalidating() {
+        return invalidating;
+    }
+
+    public int getMaxSize() {
+        return cache.getMaxSize();
+    }
+
+    public int getSize() {
+        return cache.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getInvalidations() {
+        return invalidations.sum();
+    }
+
+    /**
+     * Removes all entities (like {@link #removeAll()}, so entities being loaded are not cached either).
+     */
+    public void clear() {
+        removeAll();
+    }
+
+    @Override
+    public String toString() {
+        return "EntityCache[size=" + getSize() + ", hits=" + getHits() + ", misses=" + getMisses() + ", invalidations=" + getInvalidations() + "]";
+    }
+
+    private static final class Entry<E> {
+        private final E entity;
+        private final long expiresAt;
+
+        private Entry(E entity, long expiresAt) {
+            this.entity = entity;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired(long now) {
+            return now - expiresAt > 0;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * tksCommons / mugwort
+ *
+ * Author : Thomas Kuhlmann (ThK-Systems, http://oss.thk-systems.de) License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+package de.thksystems.persistence.hibernate;
+
+import java.io.Serializable;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.springframework.core.Ordered;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Invalidates an {@link EntityCache} immediately and again after the completion of the current transaction.
+ * <p>
+ * Until the commit, other transactions still read the old state, so a concurrent miss may load it and put it into the cache after the first
+ * invalidation. The second invalidation drops it (and increments the version of the cache, so an old state being loaded is not put either). It
+ * runs before the {@link EntityCacheLoader}s of the transaction.
+ */
+final class EntityCacheInvalidation extends TransactionSynchronizationAdapter {
+
+    private final EntityCache<?> cache;
+    private final Set<Serializable> ids = new LinkedHashSet<>();
+    private boolean all;
+    private boolean removeAll;
+
+    private EntityCacheInvalidation(EntityCache<?> cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Invalidates the entity with the given id.
+     */
+    static void invalidate(EntityCache<?> cache, Serializable id) {
+        cache.invalidate(id);
+        EntityCacheInvalidation invalidation = current(cache);
+        if (invalidation != null) {
+            invalidation.ids.add(id);
+        }
+    }
+
+    /**
+     * Invalidates all entities.
+     */
+    static void invalidateAll(EntityCache<?> cache) {
+        cache.invalidateAll();
+        EntityCacheInvalidation invalidation = current(cache);
+        if (invalidation != null) {
+            invalidation.all = true;
+        }
+    }
+
+    /**
+     * Removes all entities, even if the cache is not invalidating.
+     */
+    static void removeAll(EntityCache<?> cache) {
+        cache.removeAll();
+        EntityCacheInvalidation invalidation = current(cache);
+        if (invalidation != null) {
+            invalidation.removeAll = true;
+        }
+    }
+
+    /**
+     * Returns the invalidation of the cache for the current transaction (registering it, if not yet done), or <code>null</code>, if there is no
+     * transaction synchronization active.
+     */
+    private static EntityCacheInvalidation current(EntityCache<?> cache) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof EntityCacheInvalidation && ((EntityCacheInvalidation) synchronization).cache == cache) {
+                return (EntityCacheInvalidation) synchronization;
+            }
+        }
+        EntityCacheInvalidation invalidation = new EntityCacheInvalidation(cache);
+        TransactionSynchronizationManager.registerSynchronization(invalidation);
+        return invalidation;
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.LOWEST_PRECEDENCE - 1;
+    }
+
+    @Override
+    public void afterCompletion(int status) {
+        if (removeAll) {
+            cache.removeAll();
+        } else if (all) {
+            cache.invalidateAll();
+        } else {
+            ids.forEach(cache::invalidate);
+        }
+    }
+}
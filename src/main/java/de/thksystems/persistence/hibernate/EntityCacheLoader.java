@@ -0,0 +1,100 @@
+/*
+ * tksCommons / mugwort
+ *
+ * Author : Thomas Kuhlmann (ThK-Systems, http://oss.thk-systems.de) License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+package de.thksystems.persistence.hibernate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.criterion.Restrictions;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.metadata.ClassMetadata;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import de.thksystems.util.concurrent.DaemonThreadFactory;
+
+/**
+ * Fills an {@link EntityCache} with the entities missed by a transaction, after its commit: The entities are loaded by a separate
+ * {@link StatelessSession}, so only detached snapshots of the committed state are cached. If the transaction is rolled back, nothing is cached.
+ * <p>
+ * The entities are loaded by a single daemon thread (shared by all caches), so the commit is not delayed and the committing thread does not need a
+ * second connection while still holding its own. At most one additional connection is used for loading.
+ */
+final class EntityCacheLoader<E> extends TransactionSynchronizationAdapter {
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(new DaemonThreadFactory("entity-cache-loader"));
+
+    private final EntityCache<E> cache;
+    private final SessionFactory sessionFactory;
+    private final Class<E> entityType;
+    private final int inListSize;
+    private final Set<Long> ids = new LinkedHashSet<>();
+
+    private EntityCacheLoader(EntityCache<E> cache, SessionFactory sessionFactory, Class<E> entityType, int inListSize) {
+        this.cache = cache;
+        this.sessionFactory = sessionFactory;
+        this.entityType = entityType;
+        this.inListSize = inListSize;
+    }
+
+    /**
+     * Schedules the loading of the entity after the commit of the current transaction (or immediately, if there is no transaction synchronization
+     * active).
+     */
+    @SuppressWarnings("unchecked")
+    static <E> void schedule(EntityCache<E> cache, SessionFactory sessionFactory, Class<E> entityType, int inListSize, long id) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            EntityCacheLoader<E> loader = new EntityCacheLoader<>(cache, sessionFactory, entityType, inListSize);
+            loader.ids.add(id);
+            EXECUTOR.execute(loader::load);
+            return;
+        }
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof EntityCacheLoader && ((EntityCacheLoader<?>) synchronization).cache == cache) {
+                ((EntityCacheLoader<E>) synchronization).ids.add(id);
+                return;
+            }
+        }
+        EntityCacheLoader<E> loader = new EntityCacheLoader<>(cache, sessionFactory, entityType, inListSize);
+        loader.ids.add(id);
+        TransactionSynchronizationManager.registerSynchronization(loader);
+    }
+
+    /**
+     * Runs after the {@link EntityCacheInvalidation}s of the transaction, so the version of the cache is read after the invalidation.
+     */
+    @Override
+    public void afterCompletion(int status) {
+        if (status == STATUS_COMMITTED) {
+            EXECUTOR.execute(this::load);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void load() {
+        long version = cache.getVersion();
+        StatelessSession session = sessionFactory.openStatelessSession();
+        try {
+            ClassMetadata metadata = sessionFactory.getClassMetadata(entityType);
+            for (List<Long> chunk : IdChunks.split(new ArrayList<>(ids), inListSize)) {
+                for (E entity : (List<E>) session.createCriteria(entityType).add(Restrictions.in(BaseRepository.ID_PROPERTY, chunk)).list()) {
+                    cache.put(metadata.getIdentifier(entity, (SharedSessionContractImplementor) session), entity, version);
+                }
+            }
+        } catch (RuntimeException e) {
+            BaseRepository.LOG.warn("Cannot load {} entities of {} into the entity cache", ids.size(), entityType, e);
+        } finally {
+            session.close();
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * tksCommons / mugwort
+ *
+ * Author : Thomas Kuhlmann (ThK-Systems, http://oss.thk-systems.de) License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+package de.thksystems.persistence.hibernate;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.EntityGraph;
+import javax.persistence.EntityManager;
+import javax.persistence.Subgraph;
+
+/**
+ * Declares, which associations are fetched eagerly (in the same query) by a finder of a {@link BaseRepository}.
+ * <p>
+ * A fetch plan consists of association paths (like "customer" or "items.product"), of hibernate fetch profiles to be enabled while loading, and/or
+ * of the name of a JPA entity graph (<code>@NamedEntityGraph</code>).
+ * <p>
+ * Example: <code>findById(id, FetchPlan.paths("customer", "items.product"))</code>
+ */
+public final class FetchPlan implements Serializable {
+
+    private static final long serialVersionUID = -1887203915924542873L;
+
+    /**
+     * Hint for JPA queries and finders: The attributes of the entity graph are fetched eagerly, the others by their mapping.
+     */
+    static final String LOADGRAPH_HINT = "javax.persistence.loadgraph";
+
+    private final List<String> paths;
+    private final List<String> fetchProfiles;
+    private final String entityGraphName;
+
+    private FetchPlan(List<String> paths, List<String> fetchProfiles, String entityGraphName) {
+        this.paths = Collections.unmodifiableList(paths);
+        this.fetchProfiles = Collections.unmodifiableList(fetchProfiles);
+        this.entityGraphName = entityGraphName;
+    }
+
+    /**
+     * Fetch plan of the given association paths (dot-separated for nested associations).
+     */
+    public static FetchPlan paths(String... paths) {
+        return new FetchPlan(Arrays.asList(paths), Collections.emptyList(), null);
+    }
+
+    /**
+     * Fetch plan of the given hibernate fetch profiles.
+     */
+    public static FetchPlan fetchProfiles(String... fetchProfiles) {
+        return new FetchPlan(Collections.emptyList(), Arrays.asList(fetchProfiles), null);
+    }
+
+    /**
+     * Fetch plan of the given named JPA entity graph. (Not supported by criteria queries.)
+     */
+    public static FetchPlan entityGraph(String entityGraphName) {
+        return new FetchPlan(Collections.emptyList(), Collections.emptyList(), entityGraphName);
+    }
+
+    /**
+     * Returns a new fetch plan with the given association paths added.
+     */
+    public FetchPlan andPaths(String... morePaths) {
+        List<String> allPaths = new ArrayList<>(paths);
+        allPaths.addAll(Arrays.asList(morePaths));
+        return new FetchPlan(allPaths, fetchProfiles, entityGraphName);
+    }
+
+    /**
+     * Returns a new fetch plan with the given fetch profiles added.
+     */
+    public FetchPlan andFetchProfiles(String... moreFetchProfiles) {
+        List<String> allFetchProfiles = new ArrayList<>(fetchProfiles);
+        allFetchProfiles.addAll(Arrays.asList(moreFetchProfiles));
+        return new FetchPlan(paths, allFetchProfiles, entityGraphName);
+    }
+
+    public List<String> getPaths() {
+        return paths;
+    }
+
+    public List<String> getFetchProfiles() {
+        return fetchProfiles;
+    }
+
+    public String getEntityGraphName() {
+        return entityGraphName;
+    }
+
+    /**
+     * Returns <code>true</code>, if there is an entity graph (named or by paths).
+     */
+    boolean hasEntityGraph() {
+        return entityGraphName != null || !paths.isEmpty();
+    }
+
+    /**
+     * Returns the entity graph: The named one extended by the paths, or one created for the paths.
+     */
+    @SuppressWarnings("unchecked")
+    <T> EntityGraph<T> toEntityGraph(EntityManager entityManager, Class<T> entityType) {
+        EntityGraph<T> graph;
+        if (entityGraphName != null) {
+            graph = (EntityGraph<T>) entityManager.getEntityGraph(entityGraphName);
+            if (paths.isEmpty()) {
+                return graph;
+            }
+            graph = (EntityGraph<T>) entityManager.createEntityGraph(entityGraphName);
+        } else {
+            graph = entityManager.createEntityGraph(entityType);
+        }
+        // Deepest paths first, so a path which is the prefix of another one is covered by its subgraph
+        List<String> sortedPaths = new ArrayList<>(paths);
+        sortedPaths.sort(Comparator.comparingInt((String path) -> path.split("\\.").length).reversed());
+        Map<String, Subgraph<?>> subgraphs = new HashMap<>();
+        for (String path : sortedPaths) {
+            if (subgraphs.containsKey(path)) {
+                continue;
+            }
+            String[] attributes = path.split("\\.");
+            String prefix = null;
+            Subgraph<?> parent = null;
+            for (int i = 0; i < attributes.length - 1; i++) {
+                prefix = prefix == null ? attributes[i] : prefix + "." + attributes[i];
+                Subgraph<?> subgraph = subgraphs.get(prefix);
+                if (subgraph == null) {
+                    subgraph = parent == null ? graph.addSubgraph(attributes[i]) : parent.addSubgraph(attributes[i]);
+                    subgraphs.put(prefix, subgraph);
+                }
+                parent = subgraph;
+            }
+            String attribute = attributes[attributes.length - 1];
+            if (parent == null) {
+                graph.addAttributeNodes(attribute);
+            } else {
+                parent.addAttributeNodes(attribute);
+            }
+        }
+        return graph;
+    }
+
+    @Override
+    public String toString() {
+        return "FetchPlan[paths=" + paths + ", fetchProfiles=" + fetchProfiles + ", entityGraph=" + entityGraphName + "]";
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * tksCommons / mugwort
+ *
+ * Author : Thomas Kuhlmann (ThK-Systems, http://oss.thk-systems.de) License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+package de.thksystems.persistence.hibernate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Splits ids for IN-lists into chunks, whose sizes are powers of two.
+ * <p>
+ * The last chunk is padded by repeating its last id. So there are just a few different statements (per entity), which can be reused by the statement
+ * cache of the database and the JDBC driver.
+ */
+final class IdChunks {
+
+    private IdChunks() {
+    }
+
+    /**
+     * Returns <code>true</code>, if the given number is a power of two.
+     */
+    static boolean isPowerOfTwo(int number) {
+        return number > 0 && (number & (number - 1)) == 0;
+    }
+
+    /**
+     * Splits the given ids into padded chunks.
+     *
+     * @param maxChunkSize The maximum size of a chunk, must be a power of two.
+     */
+    static List<List<Long>> split(Collection<Long> ids, int maxChunkSize) {
+        if (!isPowerOfTwo(maxChunkSize)) {
+            throw new IllegalArgumentException("Chunk size must be a power of two: " + maxChunkSize);
+        }
+        List<List<Long>> chunks = new ArrayList<>((ids.size() + maxChunkSize - 1) / maxChunkSize);
+        Iterator<Long> iterator = ids.iterator();
+        while (iterator.hasNext()) {
+            List<Long> chunk = new ArrayList<>(Math.min(maxChunkSize, ids.size()));
+            while (chunk.size() < maxChunkSize && iterator.hasNext()) {
+                chunk.add(iterator.next());
+            }
+            Long last = chunk.get(chunk.size() - 1);
+            while (!isPowerOfTwo(chunk.size())) {
+                chunk.add(last);
+            }
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * tksCommons / mugwort
+ *
+ * Author : Thomas Kuhlmann (ThK-Systems, http://oss.thk-systems.de) License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+package de.thksystems.persistence.hibernate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * Continuation token of a keyset (seek) pagination: The sort property and the values of the sort property and the id of the last entity of a page.
+ * <p>
+ * The token is encoded as url-safe base64 string. Only simple value types are supported (no java serialization is used, so a token given by a client
+ * cannot be used to instantiate arbitrary classes).
+ */
+final class KeysetToken {
+
+    private static final byte VERSION = 1;
+
+    private static final byte TYPE_NULL = 0;
+    private static final byte TYPE_STRING = 1;
+    private static final byte TYPE_LONG = 2;
+    private static final byte TYPE_INTEGER = 3;
+    private static final byte TYPE_SHORT = 4;
+    private static final byte TYPE_BYTE = 5;
+    private static final byte TYPE_DOUBLE = 6;
+    private static final byte TYPE_FLOAT = 7;
+    private static final byte TYPE_BOOLEAN = 8;
+    private static final byte TYPE_CHARACTER = 9;
+    private static final byte TYPE_BIGDECIMAL = 10;
+    private static final byte TYPE_BIGINTEGER = 11;
+    private static final byte TYPE_DATE = 12;
+    private static final byte TYPE_INSTANT = 13;
+    private static final byte TYPE_LOCALDATE = 14;
+    private static final byte TYPE_LOCALDATETIME = 15;
+    private static final byte TYPE_TIMESTAMP = 16;
+
+    private final String sortProperty;
+    private final Object sortValue;
+    private final Object id;
+
+    KeysetToken(String sortProperty, Object sortValue, Object id) {
+        this.sortProperty = sortProperty;
+        this.sortValue = sortValue;
+        this.id = id;
+    }
+
+    String getSortProperty() {
+        return sortProperty;
+    }
+
+    Object getSortValue() {
+        return sortValue;
+    }
+
+    Object getId() {
+        return id;
+    }
+
+    /**
+     * Returns the token as opaque string.
+     */
+    String encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            writeValue(out, sortProperty);
+            writeValue(out, sortValue);
+            writeValue(out, id);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot encode continuation token", e);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+    }
+
+    /**
+     * Decodes the given opaque string.
+     *
+     * @throws IllegalArgumentException if the token is not valid.
+     */
+    static KeysetToken decode(String token) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Base64.getUrlDecoder().decode(token)))) {
+            if (in.readByte() != VERSION) {
+                throw new IllegalArgumentException("Unsupported continuation token: " + token);
+            }
+            Object sortProperty = readValue(in);
+            Object sortValue = readValue(in);
+            Object id = readValue(in);
+            if (sortProperty != null && !(sortProperty instanceof String)) {
+                throw new IllegalArgumentException("Invalid continuation token: " + token);
+            }
+            return new KeysetToken((String) sortProperty, sortValue, id);
+        } catch (IOException | IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid continuation token: " + token, e);
+        }
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(TYPE_NULL);
+        } else if (value instanceof String) {
+            out.writeByte(TYPE_STRING);
+            out.writeUTF((String) value);
+        } else if (value instanceof Long) {
+            out.writeByte(TYPE_LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(TYPE_INTEGER);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Short) {
+            out.writeByte(TYPE_SHORT);
+            out.writeShort((Short) value);
+        } else if (value instanceof Byte) {
+            out.writeByte(TYPE_BYTE);
+            out.writeByte((Byte) value);
+        } else if (value instanceof Double) {
+            out.writeByte(TYPE_DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Float) {
+            out.writeByte(TYPE_FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(TYPE_BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof Character) {
+            out.writeByte(TYPE_CHARACTER);
+            out.writeChar((Character) value);
+        } else if (value instanceof BigDecimal) {
+            out.writeByte(TYPE_BIGDECIMAL);
+            out.writeUTF(value.toString());
+        } else if (value instanceof BigInteger) {
+            out.writeByte(TYPE_BIGINTEGER);
+            out.writeUTF(value.toString());
+        } else if (value instanceof Timestamp) {
+            // With nanos, so rows with timestamps within the same millisecond are neither repeated nor skipped
+            out.writeByte(TYPE_TIMESTAMP);
+            out.writeLong(((Timestamp) value).getTime());
+            out.writeInt(((Timestamp) value).getNanos());
+        } else if (value instanceof Date) {
+            // Includes java.sql.Date
+            out.writeByte(TYPE_DATE);
+            out.writeLong(((Date) value).getTime());
+        } else if (value instanceof Instant) {
+            out.writeByte(TYPE_INSTANT);
+            out.writeUTF(value.toString());
+        } else if (value instanceof LocalDate) {
+            out.writeByte(TYPE_LOCALDATE);
+            out.writeUTF(value.toString());
+        } else if (value instanceof LocalDateTime) {
+            out.writeByte(TYPE_LOCALDATETIME);
+            out.writeUTF(value.toString());
+        } else {
+            throw new IllegalArgumentException("Unsupported type for keyset pagination: " + value.getClass());
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case TYPE_NULL:
+                return null;
+            case TYPE_STRING:
+                return in.readUTF();
+            case TYPE_LONG:
+                return in.readLong();
+            case TYPE_INTEGER:
+                return in.readInt();
+            case TYPE_SHORT:
+                return in.readShort();
+            case TYPE_BYTE:
+                return in.readByte();
+            case TYPE_DOUBLE:
+                return in.readDouble();
+            case TYPE_FLOAT:
+                return in.readFloat();
+            case TYPE_BOOLEAN:
+                return in.readBoolean();
+            case TYPE_CHARACTER:
+                return in.readChar();
+            case TYPE_BIGDECIMAL:
+                return new BigDecimal(in.readUTF());
+            case TYPE_BIGINTEGER:
+                return new BigInteger(in.readUTF());
+            case TYPE_DATE:
+                return new Date(in.readLong());
+            case TYPE_INSTANT:
+                return Instant.parse(in.readUTF());
+            case TYPE_LOCALDATE:
+                return LocalDate.parse(in.readUTF());
+            case TYPE_LOCALDATETIME:
+                return LocalDateTime.parse(in.readUTF());
+            case TYPE_TIMESTAMP:
+                Timestamp timestamp = new Timestamp(in.readLong());
+                timestamp.setNanos(in.readInt());
+                return timestamp;
+            default:
+                throw new IllegalArgumentException("Unknown value type in continuation token: " + type);
+        }
+    }
+}
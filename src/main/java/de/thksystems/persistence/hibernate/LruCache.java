@@ -0,0 +1,118 @@
+/*
+ * tksCommons / mugwort
+ *
+ * Author : Thomas Kuhlmann (ThK-Systems, http://oss.thk-systems.de) License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+package de.thksystems.persistence.hibernate;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Thread-safe cache with a maximum size, evicting the (approximately) least recently used entries.
+ * <p>
+ * Reads are lock-free, they just note the access time of the entry. If the maximum size is exceeded, one of the writing threads evicts the least
+ * recently used entries (a few more than necessary, so the eviction does not run on every write). The size may exceed the maximum shortly, while
+ * entries are added concurrently.
+ */
+final class LruCache<K, V> {
+
+    private final int maxSize;
+    private final int evictedSize;
+    private final ConcurrentMap<K, Node<V>> map = new ConcurrentHashMap<>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    LruCache(int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Cache size must be positive: " + maxSize);
+        }
+        this.maxSize = maxSize;
+        this.evictedSize = maxSize - maxSize / 16;
+    }
+
+    int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns the cached value for the key, or computes, caches and returns it.
+     */
+    V computeIfAbsent(K key, Function<? super K, ? extends V> function) {
+        Node<V> node = map.get(key);
+        if (node == null) {
+            node = map.computeIfAbsent(key, k -> {
+                V value = function.apply(k);
+                return value != null ? new Node<>(value) : null;
+            });
+            if (node == null) {
+                return null;
+            }
+            evictIfFull();
+        }
+        return node.touch();
+    }
+
+    V get(K key) {
+        Node<V> node = map.get(key);
+        return node != null ? node.touch() : null;
+    }
+
+    void put(K key, V value) {
+        map.put(key, new Node<>(value));
+        evictIfFull();
+    }
+
+    V remove(K key) {
+        Node<V> node = map.remove(key);
+        return node != null ? node.value : null;
+    }
+
+    void clear() {
+        map.clear();
+    }
+
+    int size() {
+        return map.size();
+    }
+
+    private void evictIfFull() {
+        if (map.size() <= maxSize || !evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            int size = map.size();
+            if (size <= maxSize) {
+                return;
+            }
+            List<Map.Entry<K, Node<V>>> entries = new ArrayList<>(map.entrySet());
+            entries.sort(Comparator.comparingLong(entry -> entry.getValue().lastAccess));
+            for (int i = 0; i < entries.size() && size > evictedSize; i++) {
+                if (map.remove(entries.get(i).getKey(), entries.get(i).getValue())) {
+                    size--;
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private static final class Node<V> {
+        private final V value;
+        private volatile long lastAccess = System.nanoTime();
+
+        private Node(V value) {
+            this.value = value;
+        }
+
+        private V touch() {
+            lastAccess = System.nanoTime();
+            return value;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * tksCommons / mugwort
+ *
+ * Author : Thomas Kuhlmann (ThK-Systems, http://oss.thk-systems.de) License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+package de.thksystems.persistence.hibernate;
+
+/**
+ * Normalizes native sql of the sql-using-id methods.
+ */
+final class NativeSql {
+
+    private NativeSql() {
+    }
+
+    /**
+     * Upper-cases the sql, except string literals ('...'), quoted identifiers ("...") and the names of named parameters (:name), so the same
+     * parameters can be used, however the sql is executed.
+     */
+    static String upperCase(String sql) {
+        StringBuilder sb = new StringBuilder(sql.length());
+        int length = sql.length();
+        int i = 0;
+        while (i < length) {
+            char c = sql.charAt(i);
+            if (c == '\'' || c == '"') {
+                int end = sql.indexOf(c, i + 1);
+                end = end < 0 ? length : end + 1;
+                sb.append(sql, i, end);
+                i = end;
+            } else if (c == ':' && i + 1 < length && sql.charAt(i + 1) == ':') {
+                // cast (e.g. '::text' of PostgreSQL), not a parameter
+                sb.append("::");
+                i += 2;
+            } else if (c == ':' && i + 1 < length && Character.isJavaIdentifierStart(sql.charAt(i + 1))) {
+                int end = i + 2;
+                while (end < length && Character.isJavaIdentifierPart(sql.charAt(end))) {
+                    end++;
+                }
+                sb.append(sql, i, end);
+                i = end;
+            } else {
+                sb.append(Character.toUpperCase(c));
+                i++;
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * tksCommons / mugwort
+ *
+ * Author : Thomas Kuhlmann (ThK-Systems, http://oss.thk-systems.de) License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+package de.thksystems.persistence.hibernate;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A page of entities of a keyset (seek) pagination.
+ * <p>
+ * The next page is requested by passing the {@link #getContinuationToken()} to the same query-method with the same criterions.
+ *
+ * @see BaseRepository#queryPage(String, int, org.hibernate.criterion.Criterion...)
+ */
+public class Page<E> implements Serializable {
+
+    private static final long serialVersionUID = -3064418237729735513L;
+
+    private final List<E> content;
+    private final String continuationToken;
+
+    public Page(List<E> content, String continuationToken) {
+        this.content = Collections.unmodifiableList(content);
+        this.continuationToken = continuationToken;
+    }
+
+    /**
+     * Returns the entities of this page.
+     */
+    public List<E> getContent() {
+        return content;
+    }
+
+    /**
+     * Returns the opaque token to request the next page, or <code>null</code>, if this is the last page.
+     */
+    public String getContinuationToken() {
+        return continuationToken;
+    }
+
+    /**
+     * Returns <code>true</code>, if there is a next page.
+     */
+    public boolean hasNext() {
+        return continuationToken != null;
+    }
+
+    @Override
+    public String toString() {
+        return "Page[size=" + content.size() + ", hasNext=" + hasNext() + "]";
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * tksCommons / mugwort
+ *
+ * Author : Thomas Kuhlmann (ThK-Systems, http://oss.thk-systems.de) License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+package de.thksystems.persistence.hibernate;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongBinaryOperator;
+import java.util.function.Supplier;
+
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import de.thksystems.exception.ServiceRuntimeException;
+import de.thksystems.util.concurrent.DaemonThreadFactory;
+
+/**
+ * Splits an id space into ranges and processes every range by a worker thread, in its own read-only transaction (and so its own session).
+ * <p>
+ * At most <code>parallelism</code> ranges are processed at the same time. The ranges are created lazily: The calling thread blocks, until a worker
+ * is free (back-pressure). After the first failure, no more ranges are started.
+ */
+final class PartitionedScan {
+
+    private final int parallelism;
+    private final long rangeSize;
+    private final TransactionTemplate transactionTemplate;
+
+    PartitionedScan(PlatformTransactionManager transactionManager, int parallelism, long rangeSize) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
+        if (rangeSize < 1) {
+            throw new IllegalArgumentException("Range size must be positive: " + rangeSize);
+        }
+        if (transactionManager == null) {
+            throw new IllegalStateException("No PlatformTransactionManager available for partitioned scans");
+        }
+        this.parallelism = parallelism;
+        this.rangeSize = rangeSize;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Runs the work in a read-only transaction (in the calling thread).
+     */
+    <R> R inTransaction(Supplier<R> work) {
+        return transactionTemplate.execute(status -> work.get());
+    }
+
+    /**
+     * Runs the worker for all ranges of [minId, maxId] and waits for them.
+     *
+     * @param worker Gets the first and last id of the range (both inclusive) and returns the number of processed entities.
+     * @return The total number of processed entities.
+     */
+    long run(String name, long minId, long maxId, LongBinaryOperator worker) {
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, new DaemonThreadFactory(name + "-scan"));
+        Semaphore permits = new Semaphore(parallelism);
+        AtomicReference<ServiceRuntimeException> failure = new AtomicReference<>();
+        LongAdder total = new LongAdder();
+        try {
+            long fromId = minId;
+            while (failure.get() == null) {
+                long toId = maxId - fromId < rangeSize ? maxId : fromId + rangeSize - 1;
+                permits.acquire();
+                long rangeFromId = fromId;
+                executor.execute(() -> {
+                    try {
+                        if (failure.get() == null) {
+                            total.add(inTransaction(() -> worker.applyAsLong(rangeFromId, toId)));
+                        }
+                    } catch (Throwable t) { // NOSONAR
+                        failure.compareAndSet(null, new ServiceRuntimeException("Scan of ids " + rangeFromId + " to " + toId + " failed", t));
+                    } finally {
+                        permits.release();
+                    }
+                });
+                if (toId == maxId) {
+                    break;
+                }
+                fromId = toId + 1;
+            }
+            permits.acquire(parallelism);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure.compareAndSet(null, new ServiceRuntimeException("Scan interrupted", e));
+        } finally {
+            executor.shutdownNow();
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        return total.sum();
+    }
+}
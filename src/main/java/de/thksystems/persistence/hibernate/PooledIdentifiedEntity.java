@@ -0,0 +1,43 @@
+/*
+ * tksCommons / mugwort
+ *
+ * Author : Thomas Kuhlmann (ThK-Systems, http://oss.thk-systems.de) License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+package de.thksystems.persistence.hibernate;
+
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.MappedSuperclass;
+
+import org.hibernate.annotations.GenericGenerator;
+
+import de.thksystems.persistence.hibernate.id.PooledId;
+import de.thksystems.persistence.hibernate.id.PooledIdGenerator;
+import de.thksystems.util.lang.IgnoreForEquals;
+
+/**
+ * Like {@link IdentifiedEntity}, but the ids are generated by a sequence allocating many ids by one round trip ({@link PooledIdGenerator}), so bulk
+ * creates are not bottlenecked on the id generation and can be batched.
+ * <p>
+ * The id generation can be tuned per entity by {@link PooledId}.
+ */
+@MappedSuperclass
+public abstract class PooledIdentifiedEntity extends BaseIdentifiedEntity {
+
+    private static final long serialVersionUID = -6106581787931880166L;
+
+    @Id
+    @GeneratedValue(generator = PooledIdGenerator.NAME)
+    @GenericGenerator(name = PooledIdGenerator.NAME, strategy = "de.thksystems.persistence.hibernate.id.PooledIdGenerator")
+    @IgnoreForEquals // Ignore for reflective equals
+    private long id;
+
+    @Override
+    public long getId() {
+        return id;
+    }
+
+    protected void setId(long id) {
+        this.id = id;
+    }
+}
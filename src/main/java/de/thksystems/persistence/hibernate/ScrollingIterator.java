@@ -0,0 +1,83 @@
+/*
+ * tksCommons / mugwort
+ *
+ * Author : Thomas Kuhlmann (ThK-Systems, http://oss.thk-systems.de) License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+package de.thksystems.persistence.hibernate;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+
+/**
+ * {@link Iterator} over the first column of {@link ScrollableResults}.
+ * <p>
+ * Every entity of the given type is evicted from the {@link Session}, as soon as the next element is requested (or the iterator is closed). So the
+ * first-level cache does not grow while iterating. Entities, which were already managed by the session before, are not evicted.
+ */
+@SuppressWarnings("unchecked")
+class ScrollingIterator<T> implements Iterator<T>, AutoCloseable {
+
+    private final Session session;
+    private final ScrollableResults results;
+    private final Class<?> evictableType;
+    private final Set<Object> managedBefore;
+
+    private T current;
+    private boolean advanced;
+    private boolean hasNext;
+    private boolean closed;
+
+    /**
+     * @param evictableType The type of the entities to evict, or <code>null</code> to evict nothing.
+     * @param managedBefore The entities managed by the session before (compared by identity), which are not evicted.
+     */
+    ScrollingIterator(Session session, ScrollableResults results, Class<?> evictableType, Set<Object> managedBefore) {
+        this.session = session;
+        this.results = results;
+        this.evictableType = evictableType;
+        this.managedBefore = managedBefore;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (!advanced) {
+            evictCurrent();
+            hasNext = !closed && results.next();
+            advanced = true;
+        }
+        return hasNext;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        advanced = false;
+        current = (T) results.get(0);
+        return current;
+    }
+
+    private void evictCurrent() {
+        if (current != null && evictableType != null && evictableType.isInstance(current) && !managedBefore.contains(current)) {
+            session.evict(current);
+        }
+        current = null;
+    }
+
+    /**
+     * Evicts the last consumed entity and closes the underlying cursor.
+     */
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            evictCurrent();
+            results.close();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * tksCommons / mugwort
+ *
+ * Author : Thomas Kuhlmann (ThK-Systems, http://oss.thk-systems.de) License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+package de.thksystems.persistence.hibernate.id;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Tunes the id generation of an entity extending <code>PooledIdentifiedEntity</code>. Without it, the defaults are used.
+ *
+ * @see PooledIdGenerator
+ */
+@Documented
+@Inherited
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface PooledId {
+
+    /**
+     * Name of the sequence (or table, if the dialect does not support sequences). Default: <code>&lt;entity-name&gt;_SEQ</code>
+     */
+    String sequenceName() default "";
+
+    /**
+     * Number of ids allocated by one round trip. <b>Must match the increment of the sequence!</b>
+     */
+    int incrementSize() default PooledIdGenerator.DEFAULT_INCREMENT_SIZE;
+
+    /**
+     * Optimizer of hibernate's <code>SequenceStyleGenerator</code>: <code>pooled-lo</code>, <code>pooled</code>, <code>hilo</code> or
+     * <code>none</code>.
+     */
+    String optimizer() default PooledIdGenerator.DEFAULT_OPTIMIZER;
+}
@@ -0,0 +1,49 @@
+/*
+ * tksCommons / mugwort
+ *
+ * Author : Thomas Kuhlmann (ThK-Systems, http://oss.thk-systems.de) License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+package de.thksystems.persistence.hibernate.id;
+
+import java.util.Properties;
+
+import org.hibernate.MappingException;
+import org.hibernate.boot.registry.classloading.spi.ClassLoaderService;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+/**
+ * Sequence based id generator, which allocates {@link #DEFAULT_INCREMENT_SIZE} ids by one round trip (using the pooled-lo optimizer), unless
+ * tuned by {@link PooledId} on the entity.
+ * <p>
+ * Unlike identity columns, it does not prevent JDBC batching of inserts. By default, every entity has its own sequence
+ * <code>&lt;entity-name&gt;_SEQ</code>, which must be created with the increment size (e.g. <code>INCREMENT BY 50</code>).
+ */
+public class PooledIdGenerator extends SequenceStyleGenerator {
+
+    /**
+     * Name of the generator.
+     */
+    public static final String NAME = "mugwort-pooled-id";
+
+    public static final int DEFAULT_INCREMENT_SIZE = 50;
+
+    public static final String DEFAULT_OPTIMIZER = "pooled-lo";
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+        PooledId pooledId = serviceRegistry.getService(ClassLoaderService.class).classForName(params.getProperty(IdentifierGenerator.ENTITY_NAME))
+                .getAnnotation(PooledId.class);
+        Properties pooledParams = new Properties();
+        pooledParams.putAll(params);
+        pooledParams.setProperty(CONFIG_PREFER_SEQUENCE_PER_ENTITY, "true");
+        pooledParams.setProperty(INCREMENT_PARAM, String.valueOf(pooledId != null ? pooledId.incrementSize() : DEFAULT_INCREMENT_SIZE));
+        pooledParams.setProperty(OPT_PARAM, pooledId != null ? pooledId.optimizer() : DEFAULT_OPTIMIZER);
+        if (pooledId != null && !pooledId.sequenceName().isEmpty()) {
+            pooledParams.setProperty(SEQUENCE_PARAM, pooledId.sequenceName());
+        }
+        super.configure(type, pooledParams, serviceRegistry);
+    }
+}
@@ -0,0 +1,293 @@
+/*
+ * tksCommons / mugwort
+ *
+ * Author : Thomas Kuhlmann (ThK-Systems, http://oss.thk-systems.de) License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+package de.thksystems.persistence.hibernate.inspection;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Detects N+1 query patterns: Counts the SQL statements per scope (e.g. a transaction block of a <code>BaseService</code>) and flags statements with
+ * identical shapes (same SQL apart from the bound values), which are executed repeatedly.
+ * <p>
+ * <b>The detector must be registered as statement inspector!</b> (e.g. by the hibernate property
+ * <code>hibernate.session_factory.statement_inspector</code>, which accepts an instance). If it is a spring bean, it is used by
+ * <code>BaseService.runInTransaction</code> and <code>BaseRepository</code> automatically.
+ * <p>
+ * In tests (e.g. against an in-memory database) use:
+ * <p>
+ * <pre>
+ * try (NPlusOneDetector.Scope scope = detector.openScope("loadOrders")) {
+ *     ...
+ *     scope.assertNoFindings();
+ * }
+ * </pre>
+ * Statements are only counted while a scope is open on the current thread. Nested scopes are merged into the outermost one.
+ */
+public class NPlusOneDetector implements StatementInspector {
+
+    private static final long serialVersionUID = 4712961342418802412L;
+
+    private static final Logger LOG = LoggerFactory.getLogger(NPlusOneDetector.class);
+
+    /**
+     * Default number of executions of a statement shape, from which on it is flagged.
+     */
+    public static final int DEFAULT_THRESHOLD = 5;
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern IN_LIST = Pattern.compile("(?i)\\bin\\s*\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern FROM_TABLE = Pattern.compile("(?i)\\bfrom\\s+([\\w.$\"`\\[\\]]+)");
+    private static final Pattern WHERE_COLUMN = Pattern.compile("(?i)\\bwhere\\s+(?:[\\w$\"`\\[\\]]+\\.)?([\\w$\"`\\[\\]]+)\\s*(?:=|in\\b)");
+
+    private final transient ThreadLocal<Scope> currentScope = new ThreadLocal<>();
+
+    private volatile int threshold = DEFAULT_THRESHOLD;
+    private volatile boolean failOnFindings;
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Sets the number of executions of a statement shape, from which on it is flagged. (Default: {@value #DEFAULT_THRESHOLD})
+     */
+    public void setThreshold(int threshold) {
+        if (threshold < 2) {
+            throw new IllegalArgumentException("Threshold must be at least 2: " + threshold);
+        }
+        this.threshold = threshold;
+    }
+
+    public boolean isFailOnFindings() {
+        return failOnFindings;
+    }
+
+    /**
+     * If <code>true</code>, closing an outermost scope with findings throws an {@link NPlusOneException} (e.g. to let builds fail), otherwise the
+     * findings are logged as warning. (Default: <code>false</code>)
+     */
+    public void setFailOnFindings(boolean failOnFindings) {
+        this.failOnFindings = failOnFindings;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        Scope scope = currentScope.get();
+        if (scope != null) {
+            scope.record(sql);
+        }
+        return sql;
+    }
+
+    /**
+     * Opens a scope on the current thread. If a scope is already open, the returned scope is merged into it.
+     */
+    public Scope openScope(String name) {
+        Scope scope = currentScope.get();
+        if (scope != null) {
+            scope.depth++;
+            return scope;
+        }
+        scope = new Scope(name);
+        currentScope.set(scope);
+        return scope;
+    }
+
+    /**
+     * Notes a call of a repository method in the current scope (if any), so the findings can be related to the call, which preceded them.
+     */
+    public void onRepositoryCall(Class<?> repositoryType, String method) {
+        Scope scope = currentScope.get();
+        if (scope != null) {
+            scope.lastRepositoryType = repositoryType;
+            scope.lastRepositoryMethod = method;
+        }
+    }
+
+    /**
+     * Returns the shape of the given sql: Literals are replaced by '?', IN-lists are collapsed and whitespace is normalized.
+     */
+    static String shapeOf(String sql) {
+        String shape = STRING_LITERAL.matcher(sql).replaceAll("?");
+        shape = NUMBER_LITERAL.matcher(shape).replaceAll("?");
+        shape = IN_LIST.matcher(shape).replaceAll("in (?...)");
+        return WHITESPACE.matcher(shape).replaceAll(" ").trim();
+    }
+
+    /**
+     * Returns the association ("table.column") loaded by the given shape, e.g. "ORDER_ITEM.ORDER_ID" for a lazy load of the items of an order.
+     */
+    static String associationOf(String shape) {
+        Matcher tableMatcher = FROM_TABLE.matcher(shape);
+        if (!tableMatcher.find()) {
+            return null;
+        }
+        String table = tableMatcher.group(1);
+        Matcher columnMatcher = WHERE_COLUMN.matcher(shape);
+        return columnMatcher.find(tableMatcher.end()) ? table + "." + columnMatcher.group(1) : table;
+    }
+
+    /**
+     * Statements counted on a thread between opening and closing.
+     */
+    public final class Scope implements AutoCloseable {
+
+        private final String name;
+        private final Map<String, Counter> counters = new LinkedHashMap<>();
+        private int statementCount;
+        private int depth;
+        private Class<?> lastRepositoryType;
+        private String lastRepositoryMethod;
+
+        private Scope(String name) {
+            this.name = name;
+        }
+
+        private void record(String sql) {
+            statementCount++;
+            String shape = shapeOf(sql);
+            Counter counter = counters.get(shape);
+            if (counter == null) {
+                String after = lastRepositoryType != null ? lastRepositoryType.getSimpleName() + "." + lastRepositoryMethod : null;
+                counter = new Counter(after);
+                counters.put(shape, counter);
+            }
+            counter.count++;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Returns the number of statements executed in this scope.
+         */
+        public int getStatementCount() {
+            return statementCount;
+        }
+
+        /**
+         * Returns the statement shapes executed at least {@link NPlusOneDetector#getThreshold()} times.
+         */
+        public List<Finding> getFindings() {
+            List<Finding> findings = new ArrayList<>();
+            for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+                if (entry.getValue().count >= threshold) {
+                    findings.add(new Finding(entry.getKey(), entry.getValue().count, associationOf(entry.getKey()), entry.getValue().after));
+                }
+            }
+            return Collections.unmodifiableList(findings);
+        }
+
+        /**
+         * @throws NPlusOneException if there are findings.
+         */
+        public void assertNoFindings() {
+            List<Finding> findings = getFindings();
+            if (!findings.isEmpty()) {
+                throw new NPlusOneException(name, findings);
+            }
+        }
+
+        /**
+         * Closes the scope. Closing the outermost scope reports the findings (see {@link NPlusOneDetector#setFailOnFindings(boolean)}).
+         */
+        @Override
+        public void close() {
+            close(failOnFindings);
+        }
+
+        /**
+         * Closes the scope like {@link #close()}, but never throws an exception (e.g. if the scope is closed because of another exception).
+         */
+        public void closeQuietly() {
+            close(false);
+        }
+
+        private void close(boolean fail) {
+            if (depth > 0) {
+                depth--;
+                return;
+            }
+            currentScope.remove();
+            List<Finding> findings = getFindings();
+            if (!findings.isEmpty()) {
+                if (fail) {
+                    throw new NPlusOneException(name, findings);
+                }
+                LOG.warn("N+1 queries detected in {} ({} statements): {}", name, statementCount, findings);
+            }
+        }
+    }
+
+    private static final class Counter {
+        private final String after;
+        private int count;
+
+        private Counter(String after) {
+            this.after = after;
+        }
+    }
+
+    /**
+     * A statement shape executed repeatedly in a scope.
+     */
+    public static final class Finding {
+
+        private final String shape;
+        private final int count;
+        private final String association;
+        private final String after;
+
+        Finding(String shape, int count, String association, String after) {
+            this.shape = shape;
+            this.count = count;
+            this.association = association;
+            this.after = after;
+        }
+
+        /**
+         * Returns the sql with literals replaced by '?'.
+         */
+        public String getShape() {
+            return shape;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * Returns the loaded association as "table.column" (or just the table), if it can be derived from the sql.
+         */
+        public String getAssociation() {
+            return association;
+        }
+
+        /**
+         * Returns the repository call ("Repository.method"), which preceded the first execution, if known.
+         */
+        public String getAfter() {
+            return after;
+        }
+
+        @Override
+        public String toString() {
+            return count + "x " + association + (after != null ? " after " + after : "") + ": " + shape;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+/*
+ * tksCommons / mugwort
+ *
+ * Author : Thomas Kuhlmann (ThK-Systems, http://oss.thk-systems.de) License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+package de.thksystems.persistence.hibernate.inspection;
+
+import java.util.List;
+
+import de.thksystems.exception.ServiceRuntimeException;
+
+/**
+ * Thrown by the {@link NPlusOneDetector}, if N+1 queries are detected (and it is configured to fail).
+ */
+public class NPlusOneException extends ServiceRuntimeException {
+
+    private static final long serialVersionUID = -2313960236393408826L;
+
+    private final transient List<NPlusOneDetector.Finding> findings;
+
+    public NPlusOneException(String scope, List<NPlusOneDetector.Finding> findings) {
+        super("N+1 queries detected in " + scope + ": " + findings);
+        this.findings = findings;
+    }
+
+    public List<NPlusOneDetector.Finding> getFindings() {
+        return findings;
+    }
+
+}
@@ -0,0 +1,59 @@
+/*
+ * tksCommons / mugwort
+ *
+ * Author : Thomas Kuhlmann (ThK-Systems, http://oss.thk-systems.de) License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+package de.thksystems.persistence.hibernate.metrics;
+
+import java.util.Map;
+
+import de.thksystems.util.metrics.LatencyHistogram;
+import de.thksystems.util.metrics.LatencyHistogramRegistry;
+
+/**
+ * {@link RepositoryMetrics} recording a {@link LatencyHistogram} per repository and method.
+ * <p>
+ * Recording is lock-free and does not allocate, once the histogram of the repository method exists.
+ */
+public class LatencyHistogramRepositoryMetrics implements RepositoryMetrics {
+
+    private final LatencyHistogramRegistry histograms = new LatencyHistogramRegistry();
+
+    @Override
+    public void record(Class<?> repositoryType, String method, long nanos, int rows) {
+        histograms.getOrCreate(repositoryType, method).record(nanos, rows);
+    }
+
+    /**
+     * Returns the histogram of the given repository method, or <code>null</code>, if nothing was recorded.
+     */
+    public LatencyHistogram getHistogram(Class<?> repositoryType, String method) {
+        return histograms.get(repositoryType, method);
+    }
+
+    /**
+     * Returns the histograms of the given repository by method (sorted by method).
+     */
+    public Map<String, LatencyHistogram> getHistograms(Class<?> repositoryType) {
+        return histograms.getAll(repositoryType);
+    }
+
+    /**
+     * Returns the repositories with recorded queries.
+     */
+    public Iterable<Class<?>> getRepositoryTypes() {
+        return histograms.getTypes();
+    }
+
+    /**
+     * Resets all histograms.
+     */
+    public void reset() {
+        histograms.reset();
+    }
+
+    @Override
+    public String toString() {
+        return histograms.toString();
+    }
+}
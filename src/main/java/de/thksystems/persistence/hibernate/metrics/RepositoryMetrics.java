@@ -0,0 +1,28 @@
+/*
+ * tksCommons / mugwort
+ *
+ * Author : Thomas Kuhlmann (ThK-Systems, http://oss.thk-systems.de) License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+package de.thksystems.persistence.hibernate.metrics;
+
+import de.thksystems.persistence.hibernate.BaseRepository;
+
+/**
+ * Records the latencies and row counts of the queries of {@link BaseRepository}s.
+ * <p>
+ * Implement it to bridge the metrics to JMX, Micrometer, ... or use {@link LatencyHistogramRepositoryMetrics}. If a bean of this type exists, it is
+ * autowired into every repository.
+ */
+public interface RepositoryMetrics {
+
+    /**
+     * Records a query. Called for every query, so it must be thread-safe and should neither block nor allocate.
+     *
+     * @param repositoryType Class of the repository.
+     * @param method         Name of the repository method (a constant string).
+     * @param nanos          Runtime in nanoseconds.
+     * @param rows           Number of returned (or modified) rows.
+     */
+    void record(Class<?> repositoryType, String method, long nanos, int rows);
+
+}
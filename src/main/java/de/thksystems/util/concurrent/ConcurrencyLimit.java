@@ -0,0 +1,65 @@
+/*
+ * tksCommons / mugwort
+ *
+ * Author : Thomas Kuhlmann (ThK-Systems, http://oss.thk-systems.de) License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+package de.thksystems.util.concurrent;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * Limits the number of tasks running at the same time, independent of the executor running them.
+ * <p>
+ * Every limited task acquires a permit of a semaphore before running, so the limit also holds for unbounded executors (like a fork-join pool or an
+ * executor for virtual threads), e.g. to limit the number of used connections.
+ */
+public class ConcurrencyLimit {
+
+    private final int limit;
+    private final Semaphore permits;
+
+    /**
+     * @throws IllegalArgumentException if the limit is not positive.
+     */
+    public ConcurrencyLimit(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be positive: " + limit);
+        }
+        this.limit = limit;
+        this.permits = new Semaphore(limit);
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Returns the task waiting for a permit (interruptibly) before running.
+     */
+    public <V> Callable<V> limit(Callable<V> task) {
+        return () -> {
+            permits.acquire();
+            try {
+                return task.call();
+            } finally {
+                permits.release();
+            }
+        };
+    }
+
+    /**
+     * Returns the work waiting for a permit (uninterruptibly) before running.
+     */
+    public <R> Supplier<R> limitUninterruptibly(Supplier<R> work) {
+        return () -> {
+            permits.acquireUninterruptibly();
+            try {
+                return work.get();
+            } finally {
+                permits.release();
+            }
+        };
+    }
+}
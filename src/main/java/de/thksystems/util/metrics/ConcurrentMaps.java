@@ -0,0 +1,36 @@
+/*
+ * tksCommons / mugwort
+ *
+ * Author : Thomas Kuhlmann (ThK-Systems, http://oss.thk-systems.de) License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+package de.thksystems.util.metrics;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Get-or-create of the values of the registries of this package.
+ */
+final class ConcurrentMaps {
+
+    private ConcurrentMaps() {
+    }
+
+    /**
+     * Returns the value of the given key, creating it, if not existing yet.
+     * <p>
+     * Getting an existing value is lock-free and does not allocate (as long as the factory is a non-capturing method reference). Unlike
+     * {@link ConcurrentMap#computeIfAbsent}, it does not lock the bin of the key of {@link java.util.concurrent.ConcurrentHashMap} on a hit.
+     */
+    static <K, V> V getOrCreate(ConcurrentMap<K, V> map, K key, Supplier<V> factory) {
+        V value = map.get(key);
+        if (value == null) {
+            V newValue = factory.get();
+            value = map.putIfAbsent(key, newValue);
+            if (value == null) {
+                value = newValue;
+            }
+        }
+        return value;
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * tksCommons / mugwort
+ *
+ * Author : Thomas Kuhlmann (ThK-Systems, http://oss.thk-systems.de) License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+package de.thksystems.util.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters by name (e.g. a failure type), created on first use.
+ * <p>
+ * Incrementing an existing counter is lock-free and does not allocate.
+ */
+public class CounterRegistry {
+
+    private final ConcurrentMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+
+    /**
+     * Increments the counter of the given name, creating it, if not existing yet.
+     */
+    public void increment(String name) {
+        ConcurrentMaps.getOrCreate(counters, name, LongAdder::new).increment();
+    }
+
+    /**
+     * Returns the count of the given name (0, if not existing).
+     */
+    public long get(String name) {
+        LongAdder counter = counters.get(name);
+        return counter != null ? counter.sum() : 0;
+    }
+
+    /**
+     * Returns the counts by name (sorted by name).
+     */
+    public Map<String, Long> getAll() {
+        Map<String, Long> result = new TreeMap<>();
+        counters.forEach((name, counter) -> result.put(name, counter.sum()));
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Returns the sum of all counts.
+     */
+    public long sum() {
+        return counters.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    /**
+     * Resets all counters.
+     */
+    public void reset() {
+        counters.values().forEach(LongAdder::reset);
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * tksCommons / mugwort
+ *
+ * Author : Thomas Kuhlmann (ThK-Systems, http://oss.thk-systems.de) License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+package de.thksystems.util.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * {@link LatencyHistogram}s by type (e.g. the class of a repository or service) and name (e.g. a method or transaction name), created on first use.
+ * <p>
+ * Getting an existing histogram is lock-free and does not allocate.
+ */
+public class LatencyHistogramRegistry {
+
+    private final ConcurrentMap<Class<?>, ConcurrentMap<String, LatencyHistogram>> histograms = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the histogram of the given type and name, creating it, if not existing yet.
+     */
+    public LatencyHistogram getOrCreate(Class<?> type, String name) {
+        return ConcurrentMaps.getOrCreate(ConcurrentMaps.getOrCreate(histograms, type, ConcurrentHashMap::new), name, LatencyHistogram::new);
+    }
+
+    /**
+     * Returns the histogram of the given type and name, or <code>null</code>, if not existing.
+     */
+    public LatencyHistogram get(Class<?> type, String name) {
+        Map<String, LatencyHistogram> typeHistograms = histograms.get(type);
+        return typeHistograms != null ? typeHistograms.get(name) : null;
+    }
+
+    /**
+     * Returns the histograms of the given type by name (sorted by name).
+     */
+    public Map<String, LatencyHistogram> getAll(Class<?> type) {
+        Map<String, LatencyHistogram> typeHistograms = histograms.get(type);
+        return typeHistograms != null ? Collections.unmodifiableMap(new TreeMap<>(typeHistograms)) : Collections.emptyMap();
+    }
+
+    /**
+     * Returns the types with histograms.
+     */
+    public Set<Class<?>> getTypes() {
+        return Collections.unmodifiableSet(histograms.keySet());
+    }
+
+    /**
+     * Resets all histograms.
+     */
+    public void reset() {
+        histograms.values().forEach(typeHistograms -> typeHistograms.values().forEach(LatencyHistogram::reset));
+    }
+
+    /**
+     * Returns one line per histogram: "Type.name: histogram".
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<Class<?>, ConcurrentMap<String, LatencyHistogram>> typeEntry : histograms.entrySet()) {
+            for (Map.Entry<String, LatencyHistogram> nameEntry : new TreeMap<>(typeEntry.getValue()).entrySet()) {
+                sb.append(typeEntry.getKey().getSimpleName()).append('.').append(nameEntry.getKey()).append(": ").append(nameEntry.getValue())
+                        .append('\n');
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * tksCommons / mugwort
+ *
+ * Author : Thomas Kuhlmann (ThK-Systems, http://oss.thk-systems.de) License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+package de.thksystems.container.spring;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.OptimisticLockException;
+
+import org.hibernate.Session;
+import org.hibernate.criterion.Order;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import de.thksystems.persistence.hibernate.H2TestConfiguration;
+import de.thksystems.persistence.hibernate.TestOrder;
+import de.thksystems.persistence.hibernate.TestOrderRepository;
+
+/**
+ * Integration test of {@link BaseService#runInChunkedTransactions(Iterable, int, ChunkOptions, de.thksystems.util.function.CheckedConsumer)}.
+ */
+public class BaseServiceChunkedTransactionsTest {
+
+    private static final List<String> NAMES = Arrays.asList("a", "b", "c", "d", "e");
+
+    private AnnotationConfigApplicationContext context;
+    private TestOrderService service;
+
+    @Before
+    public void setUp() throws Exception {
+        context = new AnnotationConfigApplicationContext(H2TestConfiguration.class, TestOrderService.class);
+        service = context.getBean(TestOrderService.class);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        context.close();
+    }
+
+    @Test
+    public void testCommitPerChunk() throws Exception {
+        try {
+            service.createOrders(ChunkOptions.defaults(), failingAt("d"));
+            fail("Exception expected");
+        } catch (IllegalStateException e) {
+            assertEquals("failure of d", e.getMessage());
+        }
+        assertEquals(Arrays.asList("a", "b"), service.queryNames());
+    }
+
+    @Test
+    public void testSkipFailedChunk() throws Exception {
+        ChunkProgress progress = service.createOrders(ChunkOptions.defaults().skippingFailedChunks(), failingAt("c"));
+
+        assertEquals(Arrays.asList("a", "b", "e"), service.queryNames());
+        assertEquals(3, progress.getChunks());
+        assertEquals(3, progress.getCommittedItems());
+        assertEquals(1, progress.getSkippedChunks());
+        assertEquals(2, progress.getSkippedItems());
+        assertEquals("failure of c", progress.getLastFailure().getMessage());
+    }
+
+    @Test
+    public void testRetry() throws Exception {
+        RetryPolicy retryPolicy = RetryPolicy.defaults().withBackoff(0, 0, TimeUnit.MILLISECONDS);
+        AtomicBoolean failed = new AtomicBoolean();
+        ChunkProgress progress = service.createOrders(ChunkOptions.defaults().withRetryPolicy(retryPolicy), name -> {
+            if (name.equals("c") && failed.compareAndSet(false, true)) {
+                throw new OptimisticLockException("conflict");
+            }
+        });
+
+        assertEquals(NAMES, service.queryNames());
+        assertEquals(5, progress.getCommittedItems());
+        assertEquals(3, retryPolicy.getCalls());
+        assertEquals(1, retryPolicy.getRetries());
+    }
+
+    @Test
+    public void testNoRetryOfNonRetryableFailure() throws Exception {
+        RetryPolicy retryPolicy = RetryPolicy.defaults().withBackoff(0, 0, TimeUnit.MILLISECONDS);
+        ChunkProgress progress = service.createOrders(ChunkOptions.defaults().withRetryPolicy(retryPolicy).skippingFailedChunks(), failingAt("c"));
+
+        assertEquals(Arrays.asList("a", "b", "e"), service.queryNames());
+        assertEquals(1, progress.getSkippedChunks());
+        assertEquals(0, retryPolicy.getRetries());
+    }
+
+    @Test
+    public void testProgress() throws Exception {
+        List<String> progresses = new ArrayList<>();
+        service.createOrders(ChunkOptions.defaults().skippingFailedChunks().withProgressListener(progress -> progresses.add(progress.getChunks() + ":"
+                + progress.getCommittedItems() + ":" + progress.getSkippedItems())), failingAt("c"));
+
+        assertEquals(Arrays.asList("1:2:0", "2:2:2", "3:3:2"), progresses);
+    }
+
+    @Test
+    public void testSessionIsClearedPerChunk() throws Exception {
+        // Entity manager bound to the thread (as by open-in-view), so the transactions of all chunks use it
+        EntityManagerFactory entityManagerFactory = context.getBean(EntityManagerFactory.class);
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        TransactionSynchronizationManager.bindResource(entityManagerFactory, new EntityManagerHolder(entityManager));
+        List<Integer> entityCounts = new ArrayList<>();
+        try {
+            ChunkOptions options = ChunkOptions.defaults()
+                    .withProgressListener(progress -> entityCounts.add(entityManager.unwrap(Session.class).getStatistics().getEntityCount()));
+            service.createOrders(options, name -> {
+            });
+        } finally {
+            TransactionSynchronizationManager.unbindResource(entityManagerFactory);
+            entityManager.close();
+        }
+
+        assertEquals(Arrays.asList(0, 0, 0), entityCounts);
+        assertEquals(NAMES, service.queryNames());
+    }
+
+    private static Consumer<String> failingAt(String failingName) {
+        return name -> {
+            if (name.equals(failingName)) {
+                throw new IllegalStateException("failure of " + name);
+            }
+        };
+    }
+
+    public static class TestOrderService extends BaseService {
+
+        @Autowired
+        private TestOrderRepository repository;
+
+        /**
+         * Creates an order per name, two per chunk, calling the check after creating an order.
+         */
+        public ChunkProgress createOrders(ChunkOptions options, Consumer<String> check) {
+            return runInChunkedTransactions(NAMES, 2, options, name -> {
+                repository.create(new TestOrder(name));
+                check.accept(name);
+            });
+        }
+
+        public List<String> queryNames() {
+            return runInTransaction(() -> repository.queryAll(Order.asc("name")).stream().map(TestOrder::getName).collect(Collectors.toList()));
+        }
+    }
+}
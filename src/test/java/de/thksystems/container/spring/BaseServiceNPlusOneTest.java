@@ -0,0 +1,134 @@
+/*
+ * tksCommons / mugwort
+ *
+ * Author : Thomas Kuhlmann (ThK-Systems, http://oss.thk-systems.de) License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+package de.thksystems.container.spring;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import de.thksystems.persistence.hibernate.H2TestConfiguration;
+import de.thksystems.persistence.hibernate.TestOrder;
+import de.thksystems.persistence.hibernate.TestOrderRepository;
+import de.thksystems.persistence.hibernate.inspection.NPlusOneDetector;
+import de.thksystems.persistence.hibernate.inspection.NPlusOneException;
+
+/**
+ * Integration test of the {@link NPlusOneDetector} registered as statement inspector of hibernate and used by {@link BaseService#runInTransaction}.
+ */
+public class BaseServiceNPlusOneTest {
+
+    private static final int ORDERS = NPlusOneDetector.DEFAULT_THRESHOLD + 1;
+
+    private AnnotationConfigApplicationContext context;
+    private NPlusOneDetector detector;
+    private TestOrderService service;
+    private List<Long> ids;
+
+    @Before
+    public void setUp() throws Exception {
+        context = new AnnotationConfigApplicationContext(H2TestConfiguration.class, TestOrderService.class);
+        detector = context.getBean(NPlusOneDetector.class);
+        service = context.getBean(TestOrderService.class);
+        ids = service.createOrders(ORDERS);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        context.close();
+    }
+
+    @Test
+    public void testLazyLoadingIsDetected() throws Exception {
+        try (NPlusOneDetector.Scope scope = detector.openScope("test")) {
+            assertEquals(ORDERS * 2, service.countItems());
+
+            assertEquals(ORDERS + 1, scope.getStatementCount());
+            List<NPlusOneDetector.Finding> findings = scope.getFindings();
+            assertEquals(1, findings.size());
+            assertEquals(ORDERS, findings.get(0).getCount());
+            assertTrue(findings.get(0).getAssociation(), "TEST_ORDER_ITEM.ORDER_ID".equalsIgnoreCase(findings.get(0).getAssociation()));
+            assertEquals("TestOrderRepository.queryAll", findings.get(0).getAfter());
+        }
+    }
+
+    @Test
+    public void testScopeOfTransactionIsClosed() throws Exception {
+        detector.setFailOnFindings(true);
+        try {
+            service.countItems();
+            fail("N+1 queries not detected");
+        } catch (NPlusOneException e) {
+            // expected: thrown by closing the scope of the transaction block
+        }
+        detector.setFailOnFindings(false);
+
+        try (NPlusOneDetector.Scope scope = detector.openScope("test")) {
+            assertEquals("test", scope.getName());
+            assertEquals(0, scope.getStatementCount());
+            service.findOrder(ids.get(0));
+            assertEquals(1, scope.getStatementCount());
+            assertTrue(scope.getFindings().isEmpty());
+        }
+    }
+
+    @Test
+    public void testScopeIsClosedOnFailure() throws Exception {
+        try {
+            service.failAfterQuery();
+            fail("Exception expected");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+
+        try (NPlusOneDetector.Scope scope = detector.openScope("test")) {
+            assertEquals("test", scope.getName());
+            assertEquals(0, scope.getStatementCount());
+        }
+    }
+
+    public static class TestOrderService extends BaseService {
+
+        @Autowired
+        private TestOrderRepository repository;
+
+        public List<Long> createOrders(int count) {
+            return runInTransaction(() -> {
+                List<Long> ids = new ArrayList<>();
+                for (int i = 0; i < count; i++) {
+                    TestOrder order = new TestOrder("order " + i).addItem("a").addItem("b");
+                    repository.create(order);
+                    ids.add(order.getId());
+                }
+                return ids;
+            });
+        }
+
+        public int countItems() {
+            return runInTransaction(() -> repository.queryAll().stream().mapToInt(order -> order.getItems().size()).sum());
+        }
+
+        public TestOrder findOrder(long id) {
+            return runInTransaction(() -> repository.findById(id));
+        }
+
+        public void failAfterQuery() {
+            runInTransaction(() -> {
+                if (!repository.queryAll().isEmpty()) {
+                    throw new IllegalStateException("failure");
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * tksCommons / mugwort
+ *
+ * Author : Thomas Kuhlmann (ThK-Systems, http://oss.thk-systems.de) License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+package de.thksystems.container.spring;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.criterion.Order;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import de.thksystems.persistence.hibernate.H2TestConfiguration;
+import de.thksystems.persistence.hibernate.TestOrder;
+import de.thksystems.persistence.hibernate.TestOrderRepository;
+import de.thksystems.util.function.CheckedFunction;
+
+/**
+ * Integration test of {@link BaseService#runInParallelTransactions(java.util.Collection, ParallelOptions, CheckedFunction)}.
+ */
+public class BaseServiceParallelTransactionsTest {
+
+    private AnnotationConfigApplicationContext context;
+    private TestOrderService service;
+
+    @Before
+    public void setUp() throws Exception {
+        context = new AnnotationConfigApplicationContext(H2TestConfiguration.class, TestOrderService.class);
+        service = context.getBean(TestOrderService.class);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        context.close();
+    }
+
+    @Test
+    public void testResultsInInputOrder() throws Exception {
+        // The later items finish first
+        List<Integer> items = IntStream.range(0, 8).boxed().collect(Collectors.toList());
+        List<String> results = service.runInParallel(items, ParallelOptions.defaults(), item -> {
+            TimeUnit.MILLISECONDS.sleep((8 - item) * 10L);
+            return service.createOrder("order " + item);
+        });
+
+        assertEquals(items.stream().map(item -> "order " + item).collect(Collectors.toList()), results);
+        assertEquals(8, service.queryNames().size());
+    }
+
+    @Test
+    public void testFirstFailureCancelsRemainingTasks() throws Exception {
+        AtomicInteger started = new AtomicInteger();
+        try {
+            service.runInParallel(Arrays.asList(0, 1, 2, 3, 4), ParallelOptions.defaults().withParallelism(1), item -> {
+                started.incrementAndGet();
+                service.createOrder("order " + item);
+                if (item == 0) {
+                    throw new IllegalStateException("failure of " + item);
+                }
+                TimeUnit.SECONDS.sleep(10); // interrupted by the cancellation
+                return null;
+            });
+            fail("Exception expected");
+        } catch (IllegalStateException e) {
+            assertEquals("failure of 0", e.getMessage());
+        }
+
+        assertTrue("Started: " + started.get(), started.get() <= 2);
+        assertEquals(Collections.emptyList(), service.queryNames());
+    }
+
+    @Test
+    public void testCollectErrors() throws Exception {
+        try {
+            service.runInParallel(Arrays.asList(0, 1, 2, 3, 4), ParallelOptions.defaults().collectingErrors(), item -> {
+                String name = service.createOrder("order " + item);
+                if (item % 2 == 1) {
+                    throw new IllegalStateException("failure of " + item);
+                }
+                return name;
+            });
+            fail("ParallelTransactionsException expected");
+        } catch (ParallelTransactionsException e) {
+            assertEquals("[1, 3]", e.getFailures().keySet().toString());
+            assertEquals("failure of 3", e.getFailures().get(3).getMessage());
+            assertEquals(Arrays.asList("order 0", null, "order 2", null, "order 4"), e.getResults());
+        }
+
+        assertEquals(Arrays.asList("order 0", "order 2", "order 4"), service.queryNames());
+    }
+
+    @Test
+    public void testOwnTransactionPerTask() throws Exception {
+        List<Object> entityManagers = service.runInParallelWithinTransaction(Arrays.asList(0, 1, 2, 3), item -> {
+            assertTrue(TransactionSynchronizationManager.isActualTransactionActive());
+            assertFalse(TransactionSynchronizationManager.isCurrentTransactionReadOnly());
+            // The uncommitted order of the calling transaction is not visible
+            assertTrue(service.queryNames().isEmpty());
+            return service.currentEntityManager();
+        });
+
+        Set<Object> distinct = Collections.newSetFromMap(new IdentityHashMap<>());
+        distinct.addAll(entityManagers);
+        assertEquals(5, distinct.size()); // 4 tasks and the calling transaction
+        assertFalse(distinct.contains(null));
+        assertEquals(Collections.singletonList("outer"), service.queryNames());
+    }
+
+    public static class TestOrderService extends BaseService {
+
+        @Autowired
+        private TestOrderRepository repository;
+
+        @Autowired
+        private EntityManagerFactory entityManagerFactory;
+
+        public <R> List<R> runInParallel(List<Integer> items, ParallelOptions options, CheckedFunction<Integer, R, Exception> function)
+                throws Exception {
+            return runInParallelTransactions(items, options, function);
+        }
+
+        /**
+         * Runs the tasks in parallel within a transaction, which created an order (flushed, not committed), and adds its entity manager to the
+         * results.
+         */
+        public List<Object> runInParallelWithinTransaction(List<Integer> items, CheckedFunction<Integer, Object, Exception> function)
+                throws Exception {
+            return runInTransaction(() -> {
+                repository.create(new TestOrder("outer"));
+                EntityManager entityManager = currentEntityManager();
+                entityManager.flush();
+                List<Object> results = new ArrayList<>(runInParallelTransactions(items, function));
+                results.add(entityManager);
+                return results;
+            });
+        }
+
+        public String createOrder(String name) {
+            return runInTransaction(() -> {
+                repository.create(new TestOrder(name));
+                return name;
+            });
+        }
+
+        public List<String> queryNames() {
+            return runInTransaction(() -> repository.queryAll(Order.asc("name")).stream().map(TestOrder::getName).collect(Collectors.toList()));
+        }
+
+        /**
+         * Returns the entity manager bound to the transaction of the current thread.
+         */
+        public EntityManager currentEntityManager() {
+            return EntityManagerFactoryUtils.getTransactionalEntityManager(entityManagerFactory);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * tksCommons / mugwort
+ *
+ * Author : Thomas Kuhlmann (ThK-Systems, http://oss.thk-systems.de) License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+package de.thksystems.container.spring;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.springframework.dao.ConcurrencyFailureException;
+
+import de.thksystems.exception.ServiceRuntimeException;
+
+public class RetryPolicyTest {
+
+    @Test
+    public void testIsRetryable() throws Exception {
+        assertTrue(RetryPolicy.isRetryable(new ServiceRuntimeException("retry", true)));
+        assertFalse(RetryPolicy.isRetryable(new ServiceRuntimeException("no retry", false)));
+        assertTrue(RetryPolicy.isRetryable(new RuntimeException(new ConcurrencyFailureException("deadlock"))));
+        assertTrue(RetryPolicy.isRetryable(new RuntimeException(new SQLException("serialization failure", "40001"))));
+        assertFalse(RetryPolicy.isRetryable(new RuntimeException(new SQLException("unique constraint", "23505"))));
+        assertFalse(RetryPolicy.isRetryable(new IllegalStateException()));
+    }
+
+    @Test
+    public void testMaxAttempts() throws Exception {
+        RetryPolicy policy = RetryPolicy.defaults().withMaxAttempts(3);
+        Exception failure = new ServiceRuntimeException("retry", true);
+        policy.onCall();
+        assertTrue(policy.retry(failure, 1));
+        assertTrue(policy.retry(failure, 2));
+        assertFalse(policy.retry(failure, 3));
+        assertEquals(1, policy.getCalls());
+        assertEquals(3, policy.getAttempts());
+        assertEquals(2, policy.getRetries());
+        assertEquals(1, policy.getGiveUps());
+    }
+
+    @Test
+    public void testNotRetryable() throws Exception {
+        RetryPolicy policy = RetryPolicy.defaults();
+        policy.onCall();
+        assertFalse(policy.retry(new IllegalStateException(), 1));
+        assertEquals(0, policy.getRetries());
+        assertEquals(0, policy.getGiveUps());
+    }
+
+    @Test
+    public void testBudget() throws Exception {
+        RetryPolicy policy = RetryPolicy.defaults().withBudget(0.25, 2);
+        Exception failure = new ServiceRuntimeException("retry", true);
+        policy.onCall();
+        assertTrue(policy.retry(failure, 1));
+        policy.onCall();
+        assertTrue(policy.retry(failure, 1));
+        policy.onCall();
+        assertFalse(policy.retry(failure, 1));
+        assertEquals(1, policy.getBudgetExhaustions());
+        policy.onCall();
+        policy.onCall();
+        assertTrue(policy.retry(failure, 1));
+    }
+
+    @Test
+    public void testBackoff() throws Exception {
+        RetryPolicy policy = RetryPolicy.defaults().withBackoff(10, 50, TimeUnit.MILLISECONDS).withMultiplier(2.0).withJitter(0.0);
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(10), policy.backoffNanos(1));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(20), policy.backoffNanos(2));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(50), policy.backoffNanos(4));
+        RetryPolicy jittered = policy.withJitter(0.5);
+        for (int i = 0; i < 100; i++) {
+            long backoff = jittered.backoffNanos(1);
+            assertTrue(backoff >= TimeUnit.MILLISECONDS.toNanos(5) && backoff <= TimeUnit.MILLISECONDS.toNanos(10));
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * tksCommons / mugwort
+ *
+ * Author : Thomas Kuhlmann (ThK-Systems, http://oss.thk-systems.de) License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+package de.thksystems.container.spring;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Propagation;
+
+public class TransactionOptionsTest {
+
+    @Test
+    public void testCached() throws Exception {
+        assertSame(TransactionOptions.REQUIRED, TransactionOptions.of(false, Propagation.REQUIRED));
+        assertSame(TransactionOptions.REQUIRED_READ_ONLY, TransactionOptions.REQUIRED.withReadOnly(true));
+        assertSame(TransactionOptions.REQUIRES_NEW,
+                TransactionOptions.of(false, Propagation.REQUIRES_NEW, Isolation.DEFAULT, TransactionDefinition.TIMEOUT_DEFAULT));
+        TransactionOptions options = TransactionOptions.REQUIRES_NEW.withIsolation(Isolation.SERIALIZABLE).withTimeout(10);
+        assertSame(options, TransactionOptions.of(false, Propagation.REQUIRES_NEW, Isolation.SERIALIZABLE, 10));
+        assertNotSame(options, options.withTimeout(11));
+        assertNotSame(options, options.withReadOnly(true));
+    }
+
+    @Test
+    public void testDefinition() throws Exception {
+        TransactionOptions options = TransactionOptions.of(true, Propagation.NESTED, Isolation.READ_COMMITTED, 5);
+        assertTrue(options.isReadOnly());
+        assertEquals(Propagation.NESTED.value(), options.getPropagationBehavior());
+        assertEquals(Isolation.READ_COMMITTED.value(), options.getIsolationLevel());
+        assertEquals(5, options.getTimeout());
+    }
+
+    @Test
+    public void testNamed() throws Exception {
+        TransactionOptions options = TransactionOptions.REQUIRES_NEW.withName("placeOrder");
+        assertEquals("placeOrder", options.getName());
+        assertEquals("placeOrder", options.withTimeout(10).getName());
+        assertEquals(10, options.withTimeout(10).getTimeout());
+        assertSame(options, options.withName("placeOrder"));
+        assertSame(TransactionOptions.REQUIRES_NEW, options.withName(null));
+        assertNull(TransactionOptions.REQUIRED.getName());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidTimeout() throws Exception {
+        TransactionOptions.REQUIRED.withTimeout(-2);
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * tksCommons / mugwort
+ *
+ * Author : Thomas Kuhlmann (ThK-Systems, http://oss.thk-systems.de) License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+package de.thksystems.container.spring;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class TransactionTimerTest {
+
+    @Test
+    public void testNested() throws Exception {
+        TransactionTimer timer = new TransactionTimer();
+        Object outer = new Object();
+        Object inner = new Object();
+        timer.start(outer, TransactionOptions.REQUIRED, 100L);
+        timer.start(inner, TransactionOptions.REQUIRES_NEW, 200L);
+
+        int index = timer.stop(inner);
+        assertEquals(1, index);
+        assertSame(TransactionOptions.REQUIRES_NEW, timer.getOptions(index));
+        assertEquals(200L, timer.getStartTime(index));
+
+        index = timer.stop(outer);
+        assertEquals(0, index);
+        assertEquals(100L, timer.getStartTime(index));
+        assertEquals(0, timer.size());
+        assertEquals(-1, timer.stop(outer));
+    }
+
+    @Test
+    public void testDropsUnstopped() throws Exception {
+        TransactionTimer timer = new TransactionTimer();
+        Object[] statuses = new Object[10];
+        for (int i = 0; i < statuses.length; i++) {
+            statuses[i] = new Object();
+            timer.start(statuses[i], TransactionOptions.REQUIRED, i);
+        }
+        assertEquals(10, timer.size());
+        assertEquals(9L, timer.getStartTime(timer.stop(statuses[9])));
+        assertEquals(2, timer.stop(statuses[2]));
+        assertEquals(2, timer.size());
+        assertEquals(-1, timer.stop(statuses[5]));
+        assertEquals(1L, timer.getStartTime(timer.stop(statuses[1])));
+    }
+}
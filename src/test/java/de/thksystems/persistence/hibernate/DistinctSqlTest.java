@@ -0,0 +1,78 @@
+/*
+ * tksCommons / mugwort
+ *
+ * Author : Thomas Kuhlmann (ThK-Systems, http://oss.thk-systems.de) License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+package de.thksystems.persistence.hibernate;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.hibernate.criterion.Order;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Runs {@link Distinct#SQL} queries joining a collection and ordered by properties apart from the id.
+ */
+public class DistinctSqlTest {
+
+    private AnnotationConfigApplicationContext context;
+    private TestOrderRepository repository;
+    private TransactionTemplate transactionTemplate;
+
+    @Before
+    public void setUp() throws Exception {
+        context = new AnnotationConfigApplicationContext(H2TestConfiguration.class);
+        repository = context.getBean(TestOrderRepository.class);
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        transactionTemplate.execute(status -> {
+            repository.create(new TestOrder("b").addItem("x1").addItem("x2").addItem("y"));
+            repository.create(new TestOrder("c").addItem("x3"));
+            repository.create(new TestOrder("a").addItem("x4").addItem("x5"));
+            repository.create(new TestOrder("d").addItem("y"));
+            return null;
+        });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        context.close();
+    }
+
+    @Test
+    public void testOrderByRootProperty() throws Exception {
+        transactionTemplate.execute(status -> {
+            assertEquals(Arrays.asList("a", "b", "c"), names(repository.queryDistinctByProduct("x", Order.asc("name"))));
+            assertEquals(Arrays.asList("c", "b", "a"), names(repository.queryDistinctByProduct("x", Order.desc("name"))));
+            return null;
+        });
+    }
+
+    @Test
+    public void testOrderByJoinedProperty() throws Exception {
+        transactionTemplate.execute(status -> {
+            assertEquals(Arrays.asList("a", "c", "b"), names(repository.queryDistinctByProduct("x", Order.desc("i.product"))));
+            return null;
+        });
+    }
+
+    @Test
+    public void testFindWithOrder() throws Exception {
+        transactionTemplate.execute(status -> {
+            assertEquals("c", repository.findDistinctByProduct("x3", Order.asc("name")).getName());
+            return null;
+        });
+    }
+
+    private static List<String> names(List<TestOrder> orders) {
+        return orders.stream().map(TestOrder::getName).collect(Collectors.toList());
+    }
+}
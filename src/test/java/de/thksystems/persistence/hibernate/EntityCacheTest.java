@@ -0,0 +1,114 @@
+/*
+ * tksCommons / mugwort
+ *
+ * Author : Thomas Kuhlmann (ThK-Systems, http://oss.thk-systems.de) License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+package de.thksystems.persistence.hibernate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+public class EntityCacheTest {
+
+    private AnnotationConfigApplicationContext context;
+    private TestOrderRepository repository;
+    private TransactionTemplate transactionTemplate;
+
+    @Before
+    public void setUp() throws Exception {
+        context = new AnnotationConfigApplicationContext(H2TestConfiguration.class);
+        repository = context.getBean(TestOrderRepository.class);
+        repository.enableEntityCache();
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        context.close();
+    }
+
+    @Test
+    public void testRolledBackChangeIsNotCached() throws Exception {
+        long id = transactionTemplate.execute(status -> {
+            TestOrder order = new TestOrder("original");
+            repository.create(order);
+            return order.getId();
+        });
+        EntityCache<TestOrder> cache = repository.getEntityCache();
+        cache.clear();
+
+        transactionTemplate.execute(status -> {
+            repository.findById(id).setName("rolled back");
+            repository.flush();
+            status.setRollbackOnly();
+            return null;
+        });
+        assertEquals(0, cache.getSize());
+
+        transactionTemplate.execute(status -> repository.findById(id));
+        awaitSize(cache, 1);
+
+        transactionTemplate.execute(status -> {
+            TestOrder order = repository.findById(id);
+            assertEquals("original", order.getName());
+            assertFalse(repository.getCurrentSession().contains(order));
+            return null;
+        });
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void testCommittedStateIsCached() throws Exception {
+        long id = transactionTemplate.execute(status -> {
+            TestOrder order = new TestOrder("original");
+            repository.create(order);
+            return order.getId();
+        });
+        repository.getEntityCache().clear();
+
+        transactionTemplate.execute(status -> {
+            repository.findById(id).setName("committed");
+            return null;
+        });
+        awaitSize(repository.getEntityCache(), 1);
+
+        TestOrder cached = transactionTemplate.execute(status -> repository.findById(id));
+        assertEquals("committed", cached.getName());
+        assertEquals(1, repository.getEntityCache().getHits());
+    }
+
+    @Test
+    public void testOldStateLoadedBeforeCommitIsDropped() throws Exception {
+        EntityCache<TestOrder> cache = repository.getEntityCache();
+        long id = transactionTemplate.execute(status -> {
+            TestOrder order = new TestOrder("new");
+            repository.createOrUpdate(order);
+            // a concurrent transaction misses after the invalidation and puts the old committed state (here: none yet)
+            cache.put(order.getId(), new TestOrder("old"), cache.getVersion());
+            assertEquals(1, cache.getSize());
+            return order.getId();
+        });
+        assertEquals(0, cache.getSize());
+
+        cache.clear();
+        long version = cache.getVersion();
+        cache.clear();
+        cache.put(id, new TestOrder("old"), version);
+        assertEquals(0, cache.getSize());
+    }
+
+    static void awaitSize(EntityCache<?> cache, int size) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (cache.getSize() != size && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(size, cache.getSize());
+    }
+}
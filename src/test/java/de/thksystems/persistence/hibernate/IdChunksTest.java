@@ -0,0 +1,44 @@
+/*
+ * tksCommons / mugwort
+ *
+ * Author : Thomas Kuhlmann (ThK-Systems, http://oss.thk-systems.de) License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+package de.thksystems.persistence.hibernate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class IdChunksTest {
+
+    @Test
+    public void testSplit() throws Exception {
+        List<Long> ids = new ArrayList<>();
+        for (long id = 1; id <= 21; id++) {
+            ids.add(id);
+        }
+        List<List<Long>> chunks = IdChunks.split(ids, 8);
+        assertEquals(3, chunks.size());
+        assertEquals(8, chunks.get(0).size());
+        assertEquals(8, chunks.get(1).size());
+        // 5 remaining ids, padded to 8
+        assertEquals(Arrays.asList(17L, 18L, 19L, 20L, 21L, 21L, 21L, 21L), chunks.get(2));
+    }
+
+    @Test
+    public void testSplitSmall() throws Exception {
+        assertEquals(Collections.singletonList(Arrays.asList(1L, 2L, 3L, 3L)), IdChunks.split(Arrays.asList(1L, 2L, 3L), 512));
+        assertTrue(IdChunks.split(Collections.<Long> emptyList(), 512).isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoPowerOfTwo() throws Exception {
+        IdChunks.split(Arrays.asList(1L, 2L, 3L), 1000);
+    }
+}
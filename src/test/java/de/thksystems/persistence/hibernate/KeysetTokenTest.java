@@ -0,0 +1,56 @@
+/*
+ * tksCommons / mugwort
+ *
+ * Author : Thomas Kuhlmann (ThK-Systems, http://oss.thk-systems.de) License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+package de.thksystems.persistence.hibernate;
+
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Date;
+
+import org.junit.Test;
+
+public class KeysetTokenTest {
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        assertRoundTrip(null, null, 42L);
+        assertRoundTrip("name", "Homer Simpson", 4711L);
+        assertRoundTrip("amount", new BigDecimal("12.34"), 1L);
+        assertRoundTrip("created", new Date(1234567890123L), 2L);
+        assertRoundTrip("modified", LocalDateTime.of(2016, 5, 4, 3, 2, 1), 3L);
+        assertRoundTrip("count", 17, 4L);
+    }
+
+    @Test
+    public void testTimestampRoundTrip() throws Exception {
+        Timestamp timestamp = new Timestamp(1234567890123L);
+        timestamp.setNanos(123456789);
+        assertRoundTrip("created", timestamp, 5L);
+        Timestamp decoded = (Timestamp) KeysetToken.decode(new KeysetToken("created", timestamp, 5L).encode()).getSortValue();
+        assertEquals(123456789, decoded.getNanos());
+        assertEquals(1234567890123L, decoded.getTime());
+    }
+
+    private void assertRoundTrip(String sortProperty, Object sortValue, long id) {
+        String encoded = new KeysetToken(sortProperty, sortValue, id).encode();
+        KeysetToken decoded = KeysetToken.decode(encoded);
+        assertEquals(sortProperty, decoded.getSortProperty());
+        assertEquals(sortValue, decoded.getSortValue());
+        assertEquals(id, decoded.getId());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidToken() throws Exception {
+        KeysetToken.decode("no-valid-token");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsupportedType() throws Exception {
+        new KeysetToken("foo", new Object(), 1L).encode();
+    }
+}
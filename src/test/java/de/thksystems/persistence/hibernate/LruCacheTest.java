@@ -0,0 +1,39 @@
+/*
+ * tksCommons / mugwort
+ *
+ * Author : Thomas Kuhlmann (ThK-Systems, http://oss.thk-systems.de) License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+package de.thksystems.persistence.hibernate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LruCacheTest {
+
+    @Test
+    public void testComputeIfAbsent() throws Exception {
+        LruCache<String, String> cache = new LruCache<>(10);
+        assertEquals("FOO", cache.computeIfAbsent("foo", String::toUpperCase));
+        assertEquals("FOO", cache.computeIfAbsent("foo", key -> "other"));
+        assertNull(cache.computeIfAbsent("bar", key -> null));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() throws Exception {
+        LruCache<Integer, Integer> cache = new LruCache<>(32);
+        for (int i = 0; i < 32; i++) {
+            cache.put(i, i);
+        }
+        Thread.sleep(1);
+        cache.get(0);
+        cache.put(32, 32);
+        assertTrue(cache.size() <= 32);
+        assertEquals(Integer.valueOf(0), cache.get(0));
+        assertEquals(Integer.valueOf(32), cache.get(32));
+        assertNull(cache.get(1));
+    }
+}
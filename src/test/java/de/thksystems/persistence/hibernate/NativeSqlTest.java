@@ -0,0 +1,22 @@
+/*
+ * tksCommons / mugwort
+ *
+ * Author : Thomas Kuhlmann (ThK-Systems, http://oss.thk-systems.de) License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+package de.thksystems.persistence.hibernate;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class NativeSqlTest {
+
+    @Test
+    public void testUpperCase() throws Exception {
+        assertEquals("SELECT O.ID AS ID FROM ORDERS O WHERE O.NAME = :orderName AND O.CODE = 'a''b' AND \"mixedCase\" = ?",
+                NativeSql.upperCase("select o.id as id from orders o where o.name = :orderName and o.code = 'a''b' and \"mixedCase\" = ?"));
+        assertEquals("SELECT ID FROM ORDERS WHERE CAST(X AS TEXT) = X::TEXT AND Y = :y1",
+                NativeSql.upperCase("select id from orders where cast(x as text) = x::text and y = :y1"));
+        assertEquals("SELECT 'unterminated", NativeSql.upperCase("select 'unterminated"));
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * tksCommons / mugwort
+ *
+ * Author : Thomas Kuhlmann (ThK-Systems, http://oss.thk-systems.de) License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+package de.thksystems.persistence.hibernate;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Runs the sql-using-id methods with the same named parameters by two queries and in a single statement.
+ */
+public class SqlUsingIdTest {
+
+    private AnnotationConfigApplicationContext context;
+    private TestOrderRepository repository;
+    private TransactionTemplate transactionTemplate;
+
+    @Before
+    public void setUp() throws Exception {
+        context = new AnnotationConfigApplicationContext(H2TestConfiguration.class);
+        repository = context.getBean(TestOrderRepository.class);
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        transactionTemplate.execute(status -> {
+            repository.create(new TestOrder("a1"));
+            repository.create(new TestOrder("a2"));
+            repository.create(new TestOrder("b1"));
+            return null;
+        });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        context.close();
+    }
+
+    @Test
+    public void testTwoQueries() throws Exception {
+        repository.setSqlUsingIdInSingleStatement(false);
+        assertQueries();
+    }
+
+    @Test
+    public void testSingleStatement() throws Exception {
+        repository.setSqlUsingIdInSingleStatement(true);
+        assertQueries();
+    }
+
+    private void assertQueries() {
+        transactionTemplate.execute(status -> {
+            assertEquals("a2", repository.findBySqlWithName("a2").getName());
+            assertEquals("[a1, a2]", sortedNames(repository.queryBySqlWithNamePrefix("a%", false)));
+            assertEquals("[a2, a1]", repository.queryBySqlWithNamePrefix("a%", true).stream().map(TestOrder::getName).collect(Collectors.toList())
+                    .toString());
+            assertEquals("[b1]", sortedNames(repository.queryByNamedSqlWithNamePrefix("b%")));
+            return null;
+        });
+    }
+
+    private static String sortedNames(List<TestOrder> orders) {
+        return orders.stream().map(TestOrder::getName).sorted().collect(Collectors.toList()).toString();
+    }
+}
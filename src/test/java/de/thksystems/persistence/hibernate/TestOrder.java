@@ -0,0 +1,58 @@
+/*
+ * tksCommons / mugwort
+ *
+ * Author : Thomas Kuhlmann (ThK-Systems, http://oss.thk-systems.de) License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+package de.thksystems.persistence.hibernate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.CascadeType;
+import javax.persistence.Entity;
+import javax.persistence.OneToMany;
+import javax.persistence.Table;
+
+import de.thksystems.util.lang.IgnoreForEquals;
+
+@Entity
+@Table(name = "TEST_ORDER")
+public class TestOrder extends IdentifiedEntity {
+
+    private static final long serialVersionUID = 2466712931290468311L;
+
+    private String name;
+
+    @OneToMany(mappedBy = "order", cascade = CascadeType.ALL)
+    @IgnoreForEquals
+    private List<TestOrderItem> items = new ArrayList<>();
+
+    protected TestOrder() {
+    }
+
+    public TestOrder(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public List<TestOrderItem> getItems() {
+        return items;
+    }
+
+    public TestOrder addItem(String product) {
+        items.add(new TestOrderItem(this, product));
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return asBusinessString();
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * tksCommons / mugwort
+ *
+ * Author : Thomas Kuhlmann (ThK-Systems, http://oss.thk-systems.de) License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+package de.thksystems.persistence.hibernate;
+
+import javax.persistence.Entity;
+import javax.persistence.FetchType;
+import javax.persistence.ManyToOne;
+import javax.persistence.Table;
+
+import de.thksystems.util.lang.IgnoreForEquals;
+
+@Entity
+@Table(name = "TEST_ORDER_ITEM")
+public class TestOrderItem extends IdentifiedEntity {
+
+    private static final long serialVersionUID = -3311547160862170342L;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @IgnoreForEquals
+    private TestOrder order;
+
+    private String product;
+
+    protected TestOrderItem() {
+    }
+
+    TestOrderItem(TestOrder order, String product) {
+        this.order = order;
+        this.product = product;
+    }
+
+    public TestOrder getOrder() {
+        return order;
+    }
+
+    public String getProduct() {
+        return product;
+    }
+
+    @Override
+    public String toString() {
+        return asBusinessString();
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * tksCommons / mugwort
+ *
+ * Author : Thomas Kuhlmann (ThK-Systems, http://oss.thk-systems.de) License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+package de.thksystems.persistence.hibernate;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.FetchMode;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Restrictions;
+
+public class TestOrderRepository extends BaseRepository<TestOrder> {
+
+    static final String BY_NAME_PREFIX = "byNamePrefix";
+
+    public TestOrderRepository() {
+        registerNamedSqlUsingId(BY_NAME_PREFIX, "select o.id as id from TEST_ORDER o where o.name like :namePrefix");
+    }
+
+    public void enableEntityCache() {
+        enableEntityCache(100, 0, TimeUnit.SECONDS);
+    }
+
+    public TestOrder findBySqlWithName(String name) {
+        return findBySqlUsingId("select o.id as id from TEST_ORDER o where o.name = :orderName", Collections.singletonMap("orderName", name));
+    }
+
+    public List<TestOrder> queryBySqlWithNamePrefix(String namePrefix, boolean ordered) {
+        String sql = "select o.id as id from TEST_ORDER o where o.name like :namePrefix" + (ordered ? " order by o.name desc" : "");
+        return queryBySqlUsingId(sql, Collections.singletonMap("namePrefix", namePrefix));
+    }
+
+    public List<TestOrder> queryByNamedSqlWithNamePrefix(String namePrefix) {
+        return queryBySqlUsingId(namedQuery(BY_NAME_PREFIX), Collections.singletonMap("namePrefix", namePrefix));
+    }
+
+    public List<TestOrder> queryDistinctByProduct(String product, Order order) {
+        return query(Distinct.SQL, criteria -> criteria.createAlias("items", "i").setFetchMode("items", FetchMode.JOIN)
+                .add(Restrictions.like("i.product", product + "%")).addOrder(order));
+    }
+
+    public TestOrder findDistinctByProduct(String product, Order order) {
+        return find(Distinct.SQL, criteria -> criteria.createAlias("items", "i").add(Restrictions.eq("i.product", product)).addOrder(order));
+    }
+
+    public int renameByNamePrefix(String namePrefix, String newName) {
+        return updateWhere(Collections.singletonMap("name", newName), (cb, root) -> cb.like(root.<String> get("name"), namePrefix + "%"));
+    }
+
+    public int renameByHqlWithName(String name, String newName) {
+        // same parameter name as the one of the first assignment, if it would not avoid collisions
+        return updateWhere(Collections.singletonMap("name", newName), "name = :assignment0", Collections.singletonMap("assignment0", name));
+    }
+
+    public int updateUnknownProperty() {
+        return updateWhere(Collections.singletonMap("unknown", 1), (cb, root) -> cb.conjunction());
+    }
+
+    public int deleteByNamePrefix(String namePrefix) {
+        return deleteWhere((cb, root) -> cb.like(root.<String> get("name"), namePrefix + "%"));
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * tksCommons / mugwort
+ *
+ * Author : Thomas Kuhlmann (ThK-Systems, http://oss.thk-systems.de) License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+package de.thksystems.persistence.hibernate;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.hibernate.Session;
+import org.hibernate.criterion.Order;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Runs the updateWhere- and deleteWhere-methods: Affected rows, eviction from the session and invalidation of the entity cache.
+ */
+public class UpdateWhereTest {
+
+    private AnnotationConfigApplicationContext context;
+    private TestOrderRepository repository;
+    private TransactionTemplate transactionTemplate;
+    private EntityCache<TestOrder> cache;
+    private List<Long> ids = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        context = new AnnotationConfigApplicationContext(H2TestConfiguration.class);
+        repository = context.getBean(TestOrderRepository.class);
+        repository.enableEntityCache();
+        cache = repository.getEntityCache();
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        transactionTemplate.execute(status -> {
+            for (String name : Arrays.asList("a1", "a2", "b1")) {
+                TestOrder order = new TestOrder(name);
+                repository.create(order);
+                ids.add(order.getId());
+            }
+            return null;
+        });
+        // fill the entity cache
+        transactionTemplate.execute(status -> {
+            ids.forEach(repository::findById);
+            return null;
+        });
+        EntityCacheTest.awaitSize(cache, 3);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        context.close();
+    }
+
+    @Test
+    public void testUpdateWhere() throws Exception {
+        transactionTemplate.execute(status -> {
+            List<TestOrder> orders = repository.queryAll();
+            assertEquals(2, repository.renameByNamePrefix("a", "c"));
+            assertEquals("[false, false, true]", managed(orders));
+            return null;
+        });
+
+        assertEquals(0, cache.getSize());
+        assertEquals(Arrays.asList("b1", "c", "c"), queryNames());
+    }
+
+    @Test
+    public void testUpdateWhereByHqlWithParameterNamedLikeAssignment() throws Exception {
+        transactionTemplate.execute(status -> {
+            List<TestOrder> orders = repository.queryAll();
+            assertEquals(1, repository.renameByHqlWithName("a1", "c"));
+            assertEquals("[false, false, false]", managed(orders));
+            return null;
+        });
+
+        assertEquals(0, cache.getSize());
+        assertEquals(Arrays.asList("a2", "b1", "c"), queryNames());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUpdateUnknownProperty() throws Exception {
+        transactionTemplate.execute(status -> repository.updateUnknownProperty());
+    }
+
+    @Test
+    public void testDeleteWhere() throws Exception {
+        transactionTemplate.execute(status -> {
+            List<TestOrder> orders = repository.queryAll();
+            assertEquals(2, repository.deleteByNamePrefix("a"));
+            assertEquals("[false, false, true]", managed(orders));
+            return null;
+        });
+
+        assertEquals(0, cache.getSize());
+        assertEquals(Arrays.asList("b1"), queryNames());
+    }
+
+    /**
+     * Returns, if the orders (sorted by name) are managed by the session.
+     */
+    private String managed(List<TestOrder> orders) {
+        Session session = repository.getCurrentSession();
+        return orders.stream().sorted((o1, o2) -> o1.getName().compareTo(o2.getName())).map(session::contains).collect(Collectors.toList())
+                .toString();
+    }
+
+    private List<String> queryNames() {
+        return transactionTemplate.execute(status -> repository.queryAll(Order.asc("name")).stream().map(TestOrder::getName)
+                .collect(Collectors.toList()));
+    }
+}
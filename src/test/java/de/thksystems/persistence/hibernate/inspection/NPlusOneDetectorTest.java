@@ -0,0 +1,59 @@
+/*
+ * tksCommons / mugwort
+ *
+ * Author : Thomas Kuhlmann (ThK-Systems, http://oss.thk-systems.de) License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+package de.thksystems.persistence.hibernate.inspection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+public class NPlusOneDetectorTest {
+
+    @Test
+    public void testShape() throws Exception {
+        assertEquals("select i.id from ORDER_ITEM i where i.ORDER_ID=? and i.TYPE in (?...) and i.NAME=?",
+                NPlusOneDetector.shapeOf("select i.id from ORDER_ITEM i where i.ORDER_ID=42 and i.TYPE in (1, 2,3) and i.NAME='it''s'"));
+        assertEquals("ORDER_ITEM.ORDER_ID", NPlusOneDetector.associationOf("select items0_.id as id1_1_0_ from ORDER_ITEM items0_ where items0_.ORDER_ID=?"));
+    }
+
+    @Test
+    public void testDetection() throws Exception {
+        NPlusOneDetector detector = new NPlusOneDetector();
+        try (NPlusOneDetector.Scope scope = detector.openScope("test")) {
+            detector.inspect("select o.id from ORDERS o");
+            detector.onRepositoryCall(NPlusOneDetectorTest.class, "queryAll");
+            for (int i = 0; i < NPlusOneDetector.DEFAULT_THRESHOLD; i++) {
+                detector.inspect("select i.id from ORDER_ITEM i where i.ORDER_ID=" + i);
+            }
+            assertEquals(NPlusOneDetector.DEFAULT_THRESHOLD + 1, scope.getStatementCount());
+            List<NPlusOneDetector.Finding> findings = scope.getFindings();
+            assertEquals(1, findings.size());
+            assertEquals(NPlusOneDetector.DEFAULT_THRESHOLD, findings.get(0).getCount());
+            assertEquals("ORDER_ITEM.ORDER_ID", findings.get(0).getAssociation());
+            assertEquals("NPlusOneDetectorTest.queryAll", findings.get(0).getAfter());
+        }
+    }
+
+    @Test(expected = NPlusOneException.class)
+    public void testFailOnFindings() throws Exception {
+        NPlusOneDetector detector = new NPlusOneDetector();
+        detector.setFailOnFindings(true);
+        try (NPlusOneDetector.Scope scope = detector.openScope("test")) {
+            for (int i = 0; i < NPlusOneDetector.DEFAULT_THRESHOLD; i++) {
+                detector.inspect("select c.id from CUSTOMER c where c.ID=" + i);
+            }
+        }
+    }
+
+    @Test
+    public void testNoScope() throws Exception {
+        NPlusOneDetector detector = new NPlusOneDetector();
+        String sql = "select c.id from CUSTOMER c";
+        assertTrue(sql == detector.inspect(sql));
+    }
+}
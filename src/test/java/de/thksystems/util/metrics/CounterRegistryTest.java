@@ -0,0 +1,32 @@
+/*
+ * tksCommons / mugwort
+ *
+ * Author : Thomas Kuhlmann (ThK-Systems, http://oss.thk-systems.de) License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+package de.thksystems.util.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class CounterRegistryTest {
+
+    @Test
+    public void testIncrement() throws Exception {
+        CounterRegistry registry = new CounterRegistry();
+        assertEquals(0, registry.get("b"));
+        assertTrue(registry.getAll().isEmpty());
+
+        registry.increment("b");
+        registry.increment("b");
+        registry.increment("a");
+
+        assertEquals(2, registry.get("b"));
+        assertEquals("{a=1, b=2}", registry.getAll().toString());
+        assertEquals(3, registry.sum());
+        registry.reset();
+        assertEquals(0, registry.get("b"));
+        assertEquals(0, registry.sum());
+    }
+}
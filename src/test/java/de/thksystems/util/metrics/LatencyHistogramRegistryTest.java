@@ -0,0 +1,34 @@
+/*
+ * tksCommons / mugwort
+ *
+ * Author : Thomas Kuhlmann (ThK-Systems, http://oss.thk-systems.de) License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+package de.thksystems.util.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LatencyHistogramRegistryTest {
+
+    @Test
+    public void testGetOrCreate() throws Exception {
+        LatencyHistogramRegistry registry = new LatencyHistogramRegistry();
+        assertNull(registry.get(String.class, "b"));
+        assertTrue(registry.getAll(String.class).isEmpty());
+
+        LatencyHistogram histogram = registry.getOrCreate(String.class, "b");
+        assertSame(histogram, registry.getOrCreate(String.class, "b"));
+        assertSame(histogram, registry.get(String.class, "b"));
+        registry.getOrCreate(String.class, "a").record(1000, 1);
+
+        assertEquals("[a, b]", registry.getAll(String.class).keySet().toString());
+        assertEquals(1, registry.getTypes().size());
+        assertEquals(1, registry.get(String.class, "a").getCount());
+        registry.reset();
+        assertEquals(0, registry.get(String.class, "a").getCount());
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * tksCommons / mugwort
+ *
+ * Author : Thomas Kuhlmann (ThK-Systems, http://oss.thk-systems.de) License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+package de.thksystems.util.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBuckets() throws Exception {
+        for (long value : new long[] { 0, 1, 7, 8, 15, 16, 17, 1000, 123456789, Long.MAX_VALUE }) {
+            long lowerBound = LatencyHistogram.bucketLowerBound(LatencyHistogram.bucketIndex(value));
+            assertTrue(value + " < " + lowerBound, lowerBound <= value);
+            assertTrue(value + " / " + lowerBound, value - lowerBound <= value / 8);
+        }
+    }
+
+    @Test
+    public void testPercentiles() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L, 2);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(2000, histogram.getTotalItems());
+        assertEquals(1000000, histogram.getMaxNanos());
+        assertEquals(500500, histogram.getMeanNanos());
+        long p50 = histogram.getPercentileNanos(50);
+        assertTrue(String.valueOf(p50), p50 > 500000 * 7 / 8 && p50 <= 500000);
+        long p99 = histogram.getPercentileNanos(99);
+        assertTrue(String.valueOf(p99), p99 > 990000 * 7 / 8 && p99 <= 990000);
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentileNanos(99));
+    }
+}